@@ -0,0 +1,73 @@
+package com.kyc.hawkeye;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Benchmarks merging blobs and building the blob graph, which use a {@link BlobGrid}, on synthetic word searches of
+ * 100 to 10,000 letters, to check that they scale linearly with the number of blobs. The blobs are labeled from the
+ * drawn image, so dotted letters such as i and j have to be merged.
+ *
+ * Run with "gradle jmh -Pjmh=BlobGridBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlobGridBenchmark {
+
+    private static final long SEED = 2915;
+
+    @Param({ "10", "32", "100" })
+    public int side;
+
+    private WordsearchSolverConfiguration config;
+    private BufferedImage image;
+    private List<Blob> blobs;
+    private List<Blob> cleanedBlobs;
+
+    @Setup
+    public void setUp() {
+        config = new WordsearchSolverConfiguration();
+        config.minBlobSeparation = 3;
+        config.minBlobSizeRelative = 0;
+        config.preserveImage = true;
+        List<String> words = SyntheticWordsearch.generateDictionary(1000, SEED);
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        image = SyntheticWordsearch.generate(words, side, font, 0, 0, SEED).image;
+        blobs = newSolver().getBlobs();
+        cleanedBlobs = newSolver().getCleanedBlobs(blobs);
+    }
+
+    @Benchmark
+    public List<Blob> cleanedBlobs() {
+        return newSolver().getCleanedBlobs(blobs);
+    }
+
+    @Benchmark
+    public Multimap<Blob, Blob> blobGraph() {
+        return newSolver().getBlobGraph(cleanedBlobs);
+    }
+
+    private WordsearchSolver newSolver() {
+        return new WordsearchSolver(image, config, null);
+    }
+}
@@ -0,0 +1,119 @@
+package com.kyc.hawkeye;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * A randomly generated word search, drawn the way a scanned puzzle would look: a square grid of letters, with words
+ * from a dictionary hidden in all eight directions, optionally rotated and sprinkled with noise. The same parameters
+ * and seed always generate the same image.
+ */
+final class SyntheticWordsearch {
+
+    static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    static final int MIN_WORD_LENGTH = 3;
+    static final int MAX_WORD_LENGTH = 10;
+
+    private static final int[][] DIRECTIONS = { { 1, 0 }, { 1, 1 }, { 0, 1 }, { -1, 1 }, { -1, 0 }, { -1, -1 },
+            { 0, -1 }, { 1, -1 } };
+
+    final BufferedImage image;
+    final char[][] grid;
+    final List<String> hiddenWords;
+
+    private SyntheticWordsearch(BufferedImage image, char[][] grid, List<String> hiddenWords) {
+        this.image = image;
+        this.grid = grid;
+        this.hiddenWords = hiddenWords;
+    }
+
+    /**
+     * Returns the given number of distinct random words, sorted, with lengths from MIN_WORD_LENGTH to MAX_WORD_LENGTH.
+     */
+    static List<String> generateDictionary(int size, long seed) {
+        Random random = new Random(seed);
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < size) {
+            int length = MIN_WORD_LENGTH + random.nextInt(MAX_WORD_LENGTH - MIN_WORD_LENGTH + 1);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < length; i++)
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Generates a gridSize x gridSize word search hiding words from the dictionary, drawn in the given font with
+     * cells 1.5 times the font size, rotated by the given number of degrees, with the given fraction of pixels
+     * flipped between black and white.
+     */
+    static SyntheticWordsearch generate(
+            List<String> dictionary, int gridSize, Font font, double rotation, double noise, long seed) {
+        Random random = new Random(seed);
+        char[][] grid = new char[gridSize][gridSize];
+        List<String> hiddenWords = new ArrayList<>();
+        for (int attempt = 0; attempt < gridSize * gridSize; attempt++) {
+            String word = dictionary.get(random.nextInt(dictionary.size()));
+            int[] direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            int x = random.nextInt(gridSize), y = random.nextInt(gridSize);
+            if (fits(grid, word, x, y, direction)) {
+                for (int i = 0; i < word.length(); i++)
+                    grid[y + i * direction[1]][x + i * direction[0]] = word.charAt(i);
+                hiddenWords.add(word);
+            }
+        }
+        for (char[] row : grid)
+            for (int x = 0; x < gridSize; x++)
+                if (row[x] == 0)
+                    row[x] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+
+        int cellSize = font.getSize() * 3 / 2;
+        double radians = Math.toRadians(rotation);
+        int gridWidth = gridSize * cellSize;
+        int size = (int) Math.ceil(gridWidth * (Math.abs(Math.cos(radians)) + Math.abs(Math.sin(radians)))) + 2 * cellSize;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, size, size);
+        g.setColor(Color.BLACK);
+        g.setFont(font);
+        g.rotate(radians, size / 2.0, size / 2.0);
+        FontMetrics metrics = g.getFontMetrics();
+        int offset = (size - gridWidth) / 2;
+        for (int y = 0; y < gridSize; y++)
+            for (int x = 0; x < gridSize; x++) {
+                String letter = String.valueOf(grid[y][x]);
+                g.drawString(letter, offset + x * cellSize + (cellSize - metrics.stringWidth(letter)) / 2,
+                    offset + y * cellSize + (cellSize + metrics.getAscent() - metrics.getDescent()) / 2);
+            }
+        g.dispose();
+
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++)
+                if (random.nextDouble() < noise)
+                    image.setRGB(x, y, image.getRGB(x, y) ^ 0xffffff);
+        return new SyntheticWordsearch(image, grid, hiddenWords);
+    }
+
+    private static boolean fits(char[][] grid, String word, int x, int y, int[] direction) {
+        int endX = x + (word.length() - 1) * direction[0], endY = y + (word.length() - 1) * direction[1];
+        if (endX < 0 || endX >= grid.length || endY < 0 || endY >= grid.length)
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = grid[y + i * direction[1]][x + i * direction[0]];
+            if (c != 0 && c != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
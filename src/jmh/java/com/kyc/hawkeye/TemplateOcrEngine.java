@@ -0,0 +1,80 @@
+package com.kyc.hawkeye;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A deterministic stand-in for Tesseract that recognizes letters drawn in a known font and rotation, by matching the
+ * glyph of each letter in the image against the glyphs of every allowed character drawn the same way. Letters are
+ * separated by the blank columns between them, as in the batches drawn by the solver.
+ */
+final class TemplateOcrEngine implements OcrEngine {
+
+    private static final int DARK_CUTOFF = 384;
+
+    private final String allowedChars;
+    private final List<Glyph> templates = new ArrayList<>();
+
+    TemplateOcrEngine(Font font, double rotation, String allowedChars) {
+        this.allowedChars = allowedChars;
+        int size = 4 * font.getSize();
+        for (char c : allowedChars.toCharArray()) {
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            g.setColor(Color.BLACK);
+            g.setFont(font);
+            g.rotate(Math.toRadians(rotation), size / 2.0, size / 2.0);
+            g.drawString(String.valueOf(c), size / 2 - font.getSize() / 2, size / 2 + font.getSize() / 2);
+            g.dispose();
+            templates.add(Glyph.of(mergeAll(BlobLabeler.findBlobs(Bitmap.ofDarkPixels(image, DARK_CUTOFF)))));
+        }
+    }
+
+    static OcrEngine.Factory factory(Font font, double rotation) {
+        return (datapath, allowedChars) -> new TemplateOcrEngine(font, rotation, allowedChars);
+    }
+
+    @Override
+    public String recognize(BufferedImage image) {
+        List<Blob> blobs = BlobLabeler.findBlobs(Bitmap.ofDarkPixels(image, DARK_CUTOFF));
+        blobs.sort(Comparator.comparingInt(blob -> blob.minX));
+        StringBuilder text = new StringBuilder();
+        List<Blob> letter = new ArrayList<>();
+        int letterMaxX = -1;
+        for (Blob blob : blobs) {
+            if (!letter.isEmpty() && blob.minX > letterMaxX) {
+                text.append(match(Glyph.of(mergeAll(letter))));
+                letter.clear();
+            }
+            letter.add(blob);
+            letterMaxX = Math.max(letterMaxX, blob.maxX);
+        }
+        if (!letter.isEmpty())
+            text.append(match(Glyph.of(mergeAll(letter))));
+        return text.toString();
+    }
+
+    private char match(Glyph glyph) {
+        int best = 0;
+        for (int i = 1; i < templates.size(); i++)
+            if (templates.get(i).distance(glyph) < templates.get(best).distance(glyph))
+                best = i;
+        return allowedChars.charAt(best);
+    }
+
+    private static Blob mergeAll(List<Blob> blobs) {
+        Blob merged = blobs.get(0);
+        for (int i = 1; i < blobs.size(); i++)
+            merged = merged.merge(blobs.get(i));
+        return merged;
+    }
+}
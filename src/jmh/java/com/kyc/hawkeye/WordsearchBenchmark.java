@@ -0,0 +1,151 @@
+package com.kyc.hawkeye;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Multimap;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Benchmarks each stage of the solver, and the whole solve, on synthetic word searches. OCR is done by a
+ * {@link TemplateOcrEngine}, so the results do not depend on a Tesseract installation. Each invocation starts with an
+ * empty glyph cache, so no letter is recognized from an earlier invocation, but as in a real solve, letters within
+ * glyphTolerance of each other share one recognition.
+ *
+ * Run with "gradle jmh", passing JMH options with -Pjmh, e.g. -Pjmh="WordsearchBenchmark.solve -p gridSize=30".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WordsearchBenchmark {
+
+    private static final long SEED = 2915;
+
+    @Param({ "15", "30" })
+    public int gridSize;
+
+    @Param({ "16", "32" })
+    public int fontSize;
+
+    @Param({ "0", "0.002" })
+    public double noise;
+
+    @Param({ "0", "3" })
+    public double rotation;
+
+    @Param({ "1000", "100000" })
+    public int dictionarySize;
+
+    private BufferedImage image;
+    private WordsearchSolverConfiguration config;
+    private Dictionary dictionary;
+    private OcrEnginePool ocrEnginePool;
+
+    private Bitmap darkPixels;
+    private List<Blob> blobs;
+    private List<Blob> cleanedBlobs;
+    private Multimap<Blob, Blob> blobGraph;
+    private Map<Blob, Character> letters;
+    private List<List<Blob>> validWords;
+
+    @Setup
+    public void setUp() throws IOException, TesseractException {
+        List<String> words = SyntheticWordsearch.generateDictionary(dictionarySize, SEED);
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, fontSize);
+        image = SyntheticWordsearch.generate(words, gridSize, font, rotation, noise, SEED).image;
+
+        Path dictionaryPath = Files.createTempFile("wordsearch-benchmark", ".txt");
+        Files.write(dictionaryPath, words);
+        config = new WordsearchSolverConfiguration();
+        config.preserveImage = true;
+        config.datapathForOCR = "template";
+        config.dictionaryPath = dictionaryPath.toString();
+        dictionary = Dictionary.load(config.dictionaryPath, config.allowedCharsForOCR);
+        Files.delete(dictionaryPath);
+        ocrEnginePool = new OcrEnginePool(Runtime.getRuntime().availableProcessors(),
+            TemplateOcrEngine.factory(font, rotation));
+
+        WordsearchSolver solver = newSolver();
+        darkPixels = solver.getDarkPixels();
+        blobs = solver.findBlobs(darkPixels);
+        cleanedBlobs = solver.getCleanedBlobs(blobs);
+        blobGraph = solver.getBlobGraph(cleanedBlobs);
+        letters = solver.getLetters(cleanedBlobs);
+        validWords = solver.findValidWords(blobGraph, letters);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ocrEnginePool.close();
+    }
+
+    @Benchmark
+    public Bitmap darkPixels() {
+        return newSolver().getDarkPixels();
+    }
+
+    @Benchmark
+    public List<Blob> blobs() {
+        return newSolver().findBlobs(darkPixels);
+    }
+
+    @Benchmark
+    public List<Blob> cleanedBlobs() {
+        return newSolver().getCleanedBlobs(blobs);
+    }
+
+    @Benchmark
+    public Multimap<Blob, Blob> blobGraph() {
+        return newSolver().getBlobGraph(cleanedBlobs);
+    }
+
+    @Benchmark
+    public Map<Blob, Character> letters() throws TesseractException {
+        return newSolver().getLetters(cleanedBlobs);
+    }
+
+    @Benchmark
+    public List<List<Blob>> validWords() {
+        return newSolver().findValidWords(blobGraph, letters);
+    }
+
+    @Benchmark
+    public List<List<Blob>> cleanedValidWords() {
+        return newSolver().getCleanedValidWords(validWords);
+    }
+
+    @Benchmark
+    public WordsearchResult solve() throws TesseractException {
+        return newSolver().solve();
+    }
+
+    private WordsearchSolver newSolver() {
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        solver.setOcrEnginePool(ocrEnginePool);
+        solver.setGlyphCache(new GlyphCache(10000));
+        return solver;
+    }
+}
@@ -0,0 +1,112 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A black and white image packed 64 pixels to a long, row by row.
+ */
+final class Bitmap {
+
+    final int width, height;
+    private final int wordsPerRow;
+    private final long[] bits;
+
+    Bitmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.bits = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Returns the bitmap of pixels whose red, green and blue components sum to less than darkCutoff. Common raster
+     * layouts are read directly from the image's data buffer; others are read one row at a time.
+     */
+    static Bitmap ofDarkPixels(BufferedImage image, int darkCutoff) {
+        return ofDarkPixels(image, darkCutoff, 0, image.getHeight());
+    }
+
+    /**
+     * Returns the bitmap of dark pixels in the strip of the given number of rows starting at row minY of the image, so
+     * that row y of the bitmap is row minY + y of the image.
+     */
+    static Bitmap ofDarkPixels(BufferedImage image, int darkCutoff, int minY, int height) {
+        int width = image.getWidth();
+        Bitmap bitmap = new Bitmap(width, height);
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        boolean isUnshared = image.getRaster().getParent() == null && image.getRaster().getSampleModelTranslateX() == 0
+                && image.getRaster().getSampleModelTranslateY() == 0;
+        int type = image.getType();
+        if (isUnshared && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            for (int y = 0; y < height; y++)
+                for (int x = 0, i = (minY + y) * width; x < width; x++, i++)
+                    if (((data[i] >> 16) & 0xff) + ((data[i] >> 8) & 0xff) + (data[i] & 0xff) < darkCutoff)
+                        bitmap.set(x, y);
+        } else if (isUnshared && (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+            byte[] data = ((DataBufferByte) dataBuffer).getData();
+            int pixelStride = type == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+            int offset = pixelStride - 3;
+            for (int y = 0; y < height; y++)
+                for (int x = 0, i = (minY + y) * width * pixelStride + offset; x < width; x++, i += pixelStride)
+                    if ((data[i] & 0xff) + (data[i + 1] & 0xff) + (data[i + 2] & 0xff) < darkCutoff)
+                        bitmap.set(x, y);
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, minY + y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++)
+                    if (((row[x] >> 16) & 0xff) + ((row[x] >> 8) & 0xff) + (row[x] & 0xff) < darkCutoff)
+                        bitmap.set(x, y);
+            }
+        }
+        return bitmap;
+    }
+
+    boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    void set(int x, int y) {
+        bits[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    /**
+     * Returns the first x at least fromX such that get(x, y) is the given value, or width if there is none.
+     */
+    int next(int y, int fromX, boolean value) {
+        if (fromX >= width)
+            return width;
+        int rowStart = y * wordsPerRow;
+        int wordIndex = fromX >>> 6;
+        long word = (value ? bits[rowStart + wordIndex] : ~bits[rowStart + wordIndex]) & (-1L << fromX);
+        while (word == 0) {
+            if (++wordIndex == wordsPerRow)
+                return width;
+            word = value ? bits[rowStart + wordIndex] : ~bits[rowStart + wordIndex];
+        }
+        return Math.min(width, (wordIndex << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Overwrites the image with the bitmap, in black and white.
+     */
+    void drawTo(BufferedImage image) {
+        drawTo(image, 0);
+    }
+
+    /**
+     * Overwrites the rows of the image starting at row minY with the bitmap, in black and white.
+     */
+    void drawTo(BufferedImage image, int minY) {
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                row[x] = get(x, y) ? 0xff000000 : 0xffffffff;
+            image.setRGB(0, minY + y, width, 1, row, 0, width);
+        }
+    }
+}
@@ -1,26 +1,28 @@
 package com.kyc.hawkeye;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 final class Blob {
 
-    final List<Point> points;
+    /**
+     * The pixels of the blob as horizontal runs, stored as consecutive triples (y, startX, endX) with endX inclusive.
+     */
+    final int[] runs;
     final int minX, maxX, minY, maxY;
     final Point center;
 
-    Blob(List<Point> points) {
-        this.points = points;
+    Blob(int[] runs) {
+        this.runs = runs;
         int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
-        for (Point p : points) {
-            if (p.x < minX)
-                minX = p.x;
-            if (p.x > maxX)
-                maxX = p.x;
-            if (p.y < minY)
-                minY = p.y;
-            if (p.y > maxY)
-                maxY = p.y;
+        for (int i = 0; i < runs.length; i += 3) {
+            if (runs[i + 1] < minX)
+                minX = runs[i + 1];
+            if (runs[i + 2] > maxX)
+                maxX = runs[i + 2];
+            if (runs[i] < minY)
+                minY = runs[i];
+            if (runs[i] > maxY)
+                maxY = runs[i];
         }
         this.minX = minX;
         this.maxX = maxX;
@@ -37,10 +39,20 @@ final class Blob {
         return maxY - minY + 1;
     }
 
+    int getNumRuns() {
+        return runs.length / 3;
+    }
+
+    int getNumPixels() {
+        int numPixels = 0;
+        for (int i = 0; i < runs.length; i += 3)
+            numPixels += runs[i + 2] - runs[i + 1] + 1;
+        return numPixels;
+    }
+
     Blob merge(Blob other) {
-        List<Point> mergedPoints = new ArrayList<>();
-        mergedPoints.addAll(points);
-        mergedPoints.addAll(other.points);
-        return new Blob(mergedPoints);
+        int[] mergedRuns = Arrays.copyOf(runs, runs.length + other.runs.length);
+        System.arraycopy(other.runs, 0, mergedRuns, runs.length, other.runs.length);
+        return new Blob(mergedRuns);
     }
 }
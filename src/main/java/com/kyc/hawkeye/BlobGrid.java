@@ -0,0 +1,97 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform grid of square cells over the image, where each blob is stored in every cell that its key box overlaps.
+ * The key box is the blob's bounding box for merging nearby blobs, or just its center for nearest neighbor queries.
+ */
+final class BlobGrid {
+
+    private final int cellSize, numCols, numRows;
+    private final List<List<Blob>> cells;
+
+    BlobGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.numCols = width / cellSize + 1;
+        this.numRows = height / cellSize + 1;
+        this.cells = new ArrayList<>(numCols * numRows);
+        for (int i = 0; i < numCols * numRows; i++)
+            cells.add(null);
+    }
+
+    /**
+     * Returns a cell size that puts about one of the given number of blobs in each cell, if they were spread evenly.
+     */
+    static int getCellSize(int width, int height, int numBlobs) {
+        return Math.max(4, (int) Math.sqrt((double) width * height / Math.max(1, numBlobs)));
+    }
+
+    void add(Blob blob, int minX, int minY, int maxX, int maxY) {
+        for (int row = row(minY); row <= row(maxY); row++)
+            for (int col = col(minX); col <= col(maxX); col++) {
+                int index = row * numCols + col;
+                if (cells.get(index) == null)
+                    cells.set(index, new ArrayList<>(2));
+                cells.get(index).add(blob);
+            }
+    }
+
+    void remove(Blob blob, int minX, int minY, int maxX, int maxY) {
+        for (int row = row(minY); row <= row(maxY); row++)
+            for (int col = col(minX); col <= col(maxX); col++)
+                cells.get(row * numCols + col).remove(blob);
+    }
+
+    /**
+     * Returns the blobs in cells that overlap the given box. A blob appears once for each such cell it is stored in,
+     * and callers must check whether each blob actually satisfies their query.
+     */
+    List<Blob> getCandidates(int minX, int minY, int maxX, int maxY) {
+        List<Blob> candidates = new ArrayList<>();
+        for (int row = row(minY); row <= row(maxY); row++)
+            for (int col = col(minX); col <= col(maxX); col++)
+                addAll(candidates, row, col);
+        return candidates;
+    }
+
+    /**
+     * Returns the distance from p to the nearest center of a blob other than the given one, or infinity if there is
+     * none. Only valid if blobs were added by their centers. Searches rings of cells outward from p, stopping once
+     * the next ring is farther away than the nearest blob found.
+     */
+    double getNearestDistance(Point p, Blob blob) {
+        int centerRow = row(p.y), centerCol = col(p.x);
+        int maxRing = Math.max(Math.max(centerRow, numRows - 1 - centerRow), Math.max(centerCol, numCols - 1 - centerCol));
+        double minDist = Double.POSITIVE_INFINITY;
+        List<Blob> candidates = new ArrayList<>();
+        for (int ring = 0; ring <= maxRing && (ring - 1) * cellSize <= minDist; ring++) {
+            candidates.clear();
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                int step = row == centerRow - ring || row == centerRow + ring ? 1 : 2 * ring;
+                for (int col = centerCol - ring; col <= centerCol + ring; col += Math.max(step, 1))
+                    if (row >= 0 && row < numRows && col >= 0 && col < numCols)
+                        addAll(candidates, row, col);
+            }
+            for (Blob candidate : candidates)
+                if (candidate != blob)
+                    minDist = Math.min(minDist, p.distance(candidate.center));
+        }
+        return minDist;
+    }
+
+    private void addAll(List<Blob> candidates, int row, int col) {
+        List<Blob> cell = cells.get(row * numCols + col);
+        if (cell != null)
+            candidates.addAll(cell);
+    }
+
+    private int row(int y) {
+        return Math.min(Math.max(y / cellSize, 0), numRows - 1);
+    }
+
+    private int col(int x) {
+        return Math.min(Math.max(x / cellSize, 0), numCols - 1);
+    }
+}
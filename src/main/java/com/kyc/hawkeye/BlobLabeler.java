@@ -0,0 +1,120 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the 8-connected components of dark pixels from the horizontal runs of dark pixels, using a union-find over
+ * runs. Runs must be added row by row from the top, and from left to right within a row.
+ */
+final class BlobLabeler {
+
+    private int[] runs = new int[3 * 1024];
+    private int[] parents = new int[1024];
+    private int numRuns;
+    private int prevRowStart, rowStart, rowY = -1;
+
+    /**
+     * Labels all dark pixels of the bitmap.
+     */
+    static List<Blob> findBlobs(Bitmap bitmap) {
+        BlobLabeler labeler = new BlobLabeler();
+        labeler.addRows(bitmap, 0);
+        return labeler.getBlobs();
+    }
+
+    /**
+     * Adds the runs of dark pixels of a strip of the image whose first row is row minY. Strips must be added from the
+     * top; runs touching the last row of the previous strip are joined with it, so blobs crossing the seam between
+     * strips are labeled as if the strips were one bitmap.
+     */
+    void addRows(Bitmap strip, int minY) {
+        for (int y = 0; y < strip.height; y++) {
+            int x = strip.next(y, 0, true);
+            while (x < strip.width) {
+                int end = strip.next(y, x, false);
+                addRun(minY + y, x, end - 1);
+                x = strip.next(y, end, true);
+            }
+        }
+    }
+
+    /**
+     * Adds the run of dark pixels from startX to endX (inclusive) in row y, joining it with the runs it touches in
+     * the row above.
+     */
+    void addRun(int y, int startX, int endX) {
+        if (y != rowY) {
+            prevRowStart = y == rowY + 1 ? rowStart : numRuns;
+            rowStart = numRuns;
+            rowY = y;
+        }
+        if (numRuns == parents.length) {
+            parents = Arrays.copyOf(parents, 2 * numRuns);
+            runs = Arrays.copyOf(runs, 6 * numRuns);
+        }
+        int run = numRuns++;
+        runs[3 * run] = y;
+        runs[3 * run + 1] = startX;
+        runs[3 * run + 2] = endX;
+        parents[run] = run;
+
+        // Runs in the row above are sorted by x, so skip the ones that end before this run (and therefore before
+        // every later run in this row) starts.
+        while (prevRowStart < rowStart && runs[3 * prevRowStart + 2] < startX - 1)
+            prevRowStart++;
+        for (int i = prevRowStart; i < rowStart && runs[3 * i + 1] <= endX + 1; i++)
+            union(run, i);
+    }
+
+    /**
+     * Returns the blobs of all runs added so far, ordered by their first run.
+     */
+    List<Blob> getBlobs() {
+        int[] labels = new int[numRuns];
+        int[] sizes = new int[numRuns];
+        int numLabels = 0;
+        for (int run = 0; run < numRuns; run++) {
+            int root = find(run);
+            if (root == run)
+                labels[run] = numLabels++;
+            else
+                labels[run] = labels[root];
+            sizes[labels[run]]++;
+        }
+        int[][] blobRuns = new int[numLabels][];
+        for (int label = 0; label < numLabels; label++)
+            blobRuns[label] = new int[3 * sizes[label]];
+        int[] offsets = new int[numLabels];
+        for (int run = 0; run < numRuns; run++) {
+            int label = labels[run];
+            System.arraycopy(runs, 3 * run, blobRuns[label], offsets[label], 3);
+            offsets[label] += 3;
+        }
+        List<Blob> blobs = new ArrayList<>(numLabels);
+        for (int[] r : blobRuns)
+            blobs.add(new Blob(r));
+        return blobs;
+    }
+
+    private int find(int run) {
+        while (parents[run] != run) {
+            parents[run] = parents[parents[run]];
+            run = parents[run];
+        }
+        return run;
+    }
+
+    /**
+     * Joins the components of the two runs, keeping the earlier root so that every component's root is its first
+     * run.
+     */
+    private void union(int run1, int run2) {
+        int root1 = find(run1), root2 = find(run2);
+        if (root1 < root2)
+            parents[root2] = root1;
+        else if (root2 < root1)
+            parents[root1] = root2;
+    }
+}
@@ -0,0 +1,192 @@
+package com.kyc.hawkeye;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Immutable trie over the words of a dictionary file, restricted to words spelled entirely with the allowed
+ * characters. Nodes are numbered in preorder and the edges of each node are stored contiguously, sorted by label,
+ * so the whole trie is a handful of flat arrays that can be shared by concurrent solves.
+ */
+public final class Dictionary {
+
+    static final int ROOT = 0;
+    static final int NONE = -1;
+
+    private static final int MAX_LOADED = 16;
+
+    private static final LoadingCache<List<String>, Dictionary> loaded = CacheBuilder.newBuilder()
+            .maximumSize(MAX_LOADED)
+            .build(new CacheLoader<List<String>, Dictionary>() {
+                @Override
+                public Dictionary load(List<String> key) throws IOException {
+                    return Dictionary.load(key.get(0), key.get(1));
+                }
+            });
+
+    private final int[] firstEdge;
+    private final char[] edgeLabels;
+    private final int[] edgeTargets;
+    private final BitSet isWord;
+    private final int numWords;
+
+    private Dictionary(List<String> sortedWords) {
+        this.isWord = new BitSet();
+        this.numWords = sortedWords.size();
+
+        Builder builder = new Builder(sortedWords, sortedWords.size() + 1);
+        builder.build(0, sortedWords.size(), 0);
+        this.firstEdge = Arrays.copyOf(builder.firstEdge, builder.numNodes + 1);
+        this.firstEdge[builder.numNodes] = builder.numEdges;
+        this.edgeLabels = Arrays.copyOf(builder.edgeLabels, builder.numEdges);
+        this.edgeTargets = Arrays.copyOf(builder.edgeTargets, builder.numEdges);
+    }
+
+    /**
+     * Returns the dictionary for the given word list and character set, loading it on first use. The character set is
+     * taken in sorted order without duplicates, so equal sets share one dictionary, and only the MAX_LOADED most
+     * recently used dictionaries are kept. Different dictionaries load concurrently.
+     */
+    public static Dictionary get(String path, String allowedChars) throws IOException {
+        String canonicalChars = allowedChars.chars()
+                .sorted()
+                .distinct()
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                .toString();
+        try {
+            return loaded.get(ImmutableList.of(path, canonicalChars));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    static Dictionary load(String path, String allowedChars) throws IOException {
+        try (Stream<String> lines = Files.lines(Paths.get(path))) {
+            return new Dictionary(lines
+                    .map(s -> s.trim().toUpperCase())
+                    .filter(s -> !s.isEmpty() && s.chars().allMatch(c -> allowedChars.indexOf(c) != -1))
+                    .distinct()
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Returns the number of words in the dictionary.
+     */
+    public int size() {
+        return numWords;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by the trie.
+     */
+    public long getMemoryUsage() {
+        return 4L * firstEdge.length + 2L * edgeLabels.length + 4L * edgeTargets.length + isWord.size() / 8;
+    }
+
+    /**
+     * Returns the node reached by following the edge labeled c from the given node, or {@link #NONE}.
+     */
+    int child(int node, char c) {
+        int lo = firstEdge[node], hi = firstEdge[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = edgeLabels[mid];
+            if (label < c)
+                lo = mid + 1;
+            else if (label > c)
+                hi = mid - 1;
+            else
+                return edgeTargets[mid];
+        }
+        return NONE;
+    }
+
+    boolean isWord(int node) {
+        return isWord.get(node);
+    }
+
+    boolean contains(String word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node != NONE; i++)
+            node = child(node, word.charAt(i));
+        return node != NONE && isWord(node);
+    }
+
+    private final class Builder {
+
+        final List<String> words;
+        int[] firstEdge;
+        char[] edgeLabels;
+        int[] edgeTargets;
+        int numNodes, numEdges;
+
+        Builder(List<String> words, int initialCapacity) {
+            this.words = words;
+            this.firstEdge = new int[initialCapacity];
+            this.edgeLabels = new char[initialCapacity];
+            this.edgeTargets = new int[initialCapacity];
+        }
+
+        /**
+         * Builds the subtrie for words[lo, hi), which all share the same prefix of the given length, and returns its
+         * node. Edges are reserved before recursing so that the edges of each node are contiguous.
+         */
+        int build(int lo, int hi, int depth) {
+            int node = numNodes++;
+            ensureNodeCapacity(numNodes + 1);
+            if (lo < hi && words.get(lo).length() == depth) {
+                isWord.set(node);
+                lo++;
+            }
+            int numChildren = 0;
+            for (int i = lo; i < hi; i++)
+                if (i == lo || words.get(i).charAt(depth) != words.get(i - 1).charAt(depth))
+                    numChildren++;
+            int edge = numEdges;
+            firstEdge[node] = edge;
+            numEdges += numChildren;
+            ensureEdgeCapacity(numEdges);
+            int start = lo;
+            for (int i = lo + 1; i <= hi; i++)
+                if (i == hi || words.get(i).charAt(depth) != words.get(start).charAt(depth)) {
+                    // The arrays may be reallocated by the recursive call, so read them only after it returns
+                    int target = build(start, i, depth + 1);
+                    edgeLabels[edge] = words.get(start).charAt(depth);
+                    edgeTargets[edge] = target;
+                    edge++;
+                    start = i;
+                }
+            return node;
+        }
+
+        private void ensureNodeCapacity(int capacity) {
+            if (capacity > firstEdge.length)
+                firstEdge = Arrays.copyOf(firstEdge, Math.max(capacity, 2 * firstEdge.length));
+        }
+
+        private void ensureEdgeCapacity(int capacity) {
+            if (capacity > edgeLabels.length) {
+                int newCapacity = Math.max(capacity, 2 * edgeLabels.length);
+                edgeLabels = Arrays.copyOf(edgeLabels, newCapacity);
+                edgeTargets = Arrays.copyOf(edgeTargets, newCapacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.kyc.hawkeye;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a blob scaled to a fixed 16x16 bitmap, together with its rounded aspect ratio, so that copies of the
+ * same letter in the same font compare equal or nearly equal regardless of where they are in the image.
+ */
+final class Glyph {
+
+    static final int SIZE = 16;
+
+    private final long[] bits = new long[SIZE * SIZE / 64];
+    private final int aspectRatio;
+
+    private Glyph(int aspectRatio) {
+        this.aspectRatio = aspectRatio;
+    }
+
+    static Glyph of(Blob blob) {
+        int width = blob.getWidth(), height = blob.getHeight();
+        Glyph glyph = new Glyph((int) Math.round(4 * Math.log((double) width / height) / Math.log(2)));
+        int[] runs = blob.runs;
+        for (int i = 0; i < runs.length; i += 3) {
+            int row = (runs[i] - blob.minY) * SIZE / height;
+            int startCol = (runs[i + 1] - blob.minX) * SIZE / width;
+            int endCol = (runs[i + 2] - blob.minX) * SIZE / width;
+            for (int col = startCol; col <= endCol; col++) {
+                int bit = row * SIZE + col;
+                glyph.bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return glyph;
+    }
+
+    /**
+     * Returns the number of cells that differ between the two glyphs, or Integer.MAX_VALUE if their aspect ratios
+     * differ.
+     */
+    int distance(Glyph other) {
+        if (aspectRatio != other.aspectRatio)
+            return Integer.MAX_VALUE;
+        int distance = 0;
+        for (int i = 0; i < bits.length; i++)
+            distance += Long.bitCount(bits[i] ^ other.bits[i]);
+        return distance;
+    }
+
+    /**
+     * Returns a hash of the aspect ratio and the cells of each of numBlocks blocks of consecutive cells, so glyphs
+     * that have the same aspect ratio and cells in a block have the same hash for it.
+     */
+    long[] getBlockHashes(int numBlocks) {
+        long[] hashes = new long[numBlocks];
+        for (int block = 0; block < numBlocks; block++)
+            hashes[block] = 31L * aspectRatio + block;
+        for (int bit = 0; bit < SIZE * SIZE; bit++) {
+            int block = bit * numBlocks / (SIZE * SIZE);
+            hashes[block] = 31 * hashes[block] + (bits[bit >>> 6] >>> bit & 1);
+        }
+        return hashes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Glyph))
+            return false;
+        Glyph other = (Glyph) obj;
+        return aspectRatio == other.aspectRatio && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * aspectRatio + Arrays.hashCode(bits);
+    }
+}
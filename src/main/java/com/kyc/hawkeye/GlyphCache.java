@@ -0,0 +1,44 @@
+package com.kyc.hawkeye;
+
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Least recently used cache of the letters recognized for glyphs, shared across solves so that resubmitting a puzzle,
+ * or another puzzle in the same font, can skip OCR for the glyphs it has already seen.
+ */
+public final class GlyphCache {
+
+    private static GlyphCache defaultCache;
+
+    private final Cache<List<Object>, Character> letters;
+
+    public GlyphCache(long maxSize) {
+        this.letters = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    }
+
+    /**
+     * Returns a process-wide cache, for solvers that are not given a cache.
+     */
+    public static synchronized GlyphCache getDefault() {
+        if (defaultCache == null)
+            defaultCache = new GlyphCache(10000);
+        return defaultCache;
+    }
+
+    public CacheStats getStats() {
+        return letters.stats();
+    }
+
+    Character get(Glyph glyph, String datapath, String allowedChars) {
+        return letters.getIfPresent(ImmutableList.of(glyph, datapath, allowedChars));
+    }
+
+    void put(Glyph glyph, String datapath, String allowedChars, char letter) {
+        letters.put(ImmutableList.of(glyph, datapath, allowedChars), letter);
+    }
+}
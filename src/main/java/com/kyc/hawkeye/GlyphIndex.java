@@ -0,0 +1,61 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Glyphs indexed for finding the nearest one within a tolerance without comparing against all of them. The cells of
+ * each glyph are split into tolerance + 1 blocks, and two glyphs that differ in at most tolerance cells must agree on
+ * every cell of at least one block, so only the glyphs that share a block hash with the query are compared.
+ */
+final class GlyphIndex<T> {
+
+    private final int tolerance;
+    private final int numBlocks;
+    private final List<Glyph> glyphs = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
+    private final Map<Long, List<Integer>> blocks = new HashMap<>();
+
+    /**
+     * Creates an index for the given tolerance. With a negative tolerance nothing is ever found.
+     */
+    GlyphIndex(int tolerance) {
+        this.tolerance = tolerance;
+        this.numBlocks = Math.max(1, Math.min(tolerance + 1, Glyph.SIZE * Glyph.SIZE));
+    }
+
+    void add(Glyph glyph, T value) {
+        if (tolerance < 0)
+            return;
+        int index = glyphs.size();
+        glyphs.add(glyph);
+        values.add(value);
+        for (long hash : glyph.getBlockHashes(numBlocks))
+            blocks.computeIfAbsent(hash, h -> new ArrayList<>(1)).add(index);
+    }
+
+    /**
+     * Returns the value of the glyph nearest the given one, the first added of any equally near, or null if none are
+     * within the tolerance.
+     */
+    T findNearest(Glyph glyph) {
+        if (tolerance < 0)
+            return null;
+        int nearest = -1, nearestDistance = Integer.MAX_VALUE;
+        for (long hash : glyph.getBlockHashes(numBlocks)) {
+            List<Integer> candidates = blocks.get(hash);
+            if (candidates != null)
+                for (int index : candidates) {
+                    int distance = glyphs.get(index).distance(glyph);
+                    if (distance <= tolerance
+                            && (distance < nearestDistance || distance == nearestDistance && index < nearest)) {
+                        nearest = index;
+                        nearestDistance = distance;
+                    }
+                }
+        }
+        return nearest == -1 ? null : values.get(nearest);
+    }
+}
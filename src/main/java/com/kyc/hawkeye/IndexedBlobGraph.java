@@ -0,0 +1,57 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Array form of a blob graph for the word search: blobs are numbered, and each blob's neighbors, the headings to
+ * those neighbors and the recognized letters are stored in primitive arrays so the search does no lookups or
+ * trigonometry per step.
+ */
+final class IndexedBlobGraph {
+
+    final List<Blob> blobs;
+    final int numStarts;
+    final char[] letters;
+    final int[][] neighbors;
+    final double[][] headings;
+
+    IndexedBlobGraph(Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters) {
+        Map<Blob, Integer> indices = new IdentityHashMap<>();
+        this.blobs = new ArrayList<>();
+        for (Blob blob : blobGraph.keySet())
+            add(blob, indices);
+        // Blobs with outgoing edges come first, so they are exactly the blobs [0, numStarts)
+        this.numStarts = blobs.size();
+        for (Blob blob : blobGraph.values())
+            add(blob, indices);
+
+        int n = blobs.size();
+        this.letters = new char[n];
+        this.neighbors = new int[n][];
+        this.headings = new double[n][];
+        for (int i = 0; i < n; i++) {
+            Blob blob = blobs.get(i);
+            Character letter = letters.get(blob);
+            this.letters[i] = letter == null ? ' ' : letter;
+            List<Blob> neighborBlobs = new ArrayList<>(blobGraph.get(blob));
+            neighbors[i] = new int[neighborBlobs.size()];
+            headings[i] = new double[neighborBlobs.size()];
+            for (int j = 0; j < neighborBlobs.size(); j++) {
+                neighbors[i][j] = indices.get(neighborBlobs.get(j));
+                headings[i][j] = blob.center.headingTo(neighborBlobs.get(j).center);
+            }
+        }
+    }
+
+    private void add(Blob blob, Map<Blob, Integer> indices) {
+        if (!indices.containsKey(blob)) {
+            indices.put(blob, blobs.size());
+            blobs.add(blob);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * The letters of a blob graph laid out in a regular grid of rows and columns, for the classic word search along the
+ * eight directions of the grid. Rows and columns may be rotated and sheared, as in a skewed photo, and cells may be
+ * missing, as where two letters merged into one blob. Only the steps between cells that are edges of the blob graph
+ * are kept, so a word along the grid is also a path in the graph.
+ */
+final class LetterGrid {
+
+    /**
+     * The (row, col) steps of the eight directions of the grid.
+     */
+    static final int[][] DIRECTIONS =
+            { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } };
+
+    private static final int MIN_SIZE = 2;
+    private static final double MIN_FILL = 0.5;
+
+    final int numRows, numCols;
+    final Blob[][] blobs;
+    final char[][] letters;
+    /**
+     * The heading in degrees of the graph edge from each cell to the next cell in each direction, or NaN if there is
+     * no such edge.
+     */
+    final double[][][] headings;
+    /**
+     * A lower bound on the angle in degrees between any two graph edges along different directions of the grid, so a
+     * word search whose bend limit is at most this angle can only find words along straight lines of the grid.
+     */
+    double minTurnAngle = Double.POSITIVE_INFINITY;
+
+    private LetterGrid(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.blobs = new Blob[numRows][numCols];
+        this.letters = new char[numRows][numCols];
+        this.headings = new double[numRows][numCols][DIRECTIONS.length];
+        for (char[] row : letters)
+            Arrays.fill(row, ' ');
+        for (double[][] row : headings)
+            for (double[] cell : row)
+                Arrays.fill(cell, Double.NaN);
+    }
+
+    /**
+     * Returns the grid that the blobs of the graph lie on, or null if they do not all lie within the given tolerance
+     * (a fraction of the spacing of the grid) of distinct cells of one grid of at least two rows and columns, at least
+     * half of whose cells have a blob, or if an edge of the graph joins two cells that are not next to each other.
+     *
+     * The direction of the rows is the median direction from each blob to its nearest neighbor, and the two steps of
+     * the grid are the median graph edges along and across it. Each blob is placed in the cell nearest its center, and
+     * the grid is then fit to the blobs by least squares and the blobs placed again, so that small errors in the
+     * steps do not add up across a large grid.
+     */
+    static LetterGrid detect(Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters, double tolerance) {
+        Set<Blob> blobSet = new LinkedHashSet<>(blobGraph.keySet());
+        blobSet.addAll(blobGraph.values());
+        List<Blob> blobs = new ArrayList<>(blobSet);
+        if (blobs.size() < MIN_SIZE * MIN_SIZE)
+            return null;
+
+        double rowAngle = getRowAngle(blobGraph);
+        double[] rowStep = getMedianEdge(blobGraph, rowAngle);
+        double[] colStep = getMedianEdge(blobGraph, rowAngle + Math.PI / 2);
+        if (rowStep == null || colStep == null)
+            return null;
+        // The lattice maps (col, row) to origin + col * rowStep + row * colStep. Starting from the blob nearest the
+        // middle halves how far errors in the steps add up.
+        Blob origin = getMiddleBlob(blobs);
+        double[] lattice = { origin.center.x, rowStep[0], colStep[0], origin.center.y, rowStep[1], colStep[1] };
+        double[][] cells = place(blobs, lattice);
+        for (int i = 0; i < 2; i++)
+            if (cells == null || (lattice = fit(blobs, cells)) == null || (cells = place(blobs, lattice)) == null)
+                return null;
+
+        int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE, minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+        for (double[] cell : cells) {
+            if (Math.abs(cell[0] - Math.rint(cell[0])) > tolerance || Math.abs(cell[1] - Math.rint(cell[1])) > tolerance)
+                return null;
+            minCol = Math.min(minCol, (int) Math.rint(cell[0]));
+            maxCol = Math.max(maxCol, (int) Math.rint(cell[0]));
+            minRow = Math.min(minRow, (int) Math.rint(cell[1]));
+            maxRow = Math.max(maxRow, (int) Math.rint(cell[1]));
+        }
+        long numCells = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (maxRow - minRow + 1 < MIN_SIZE || maxCol - minCol + 1 < MIN_SIZE || blobs.size() < MIN_FILL * numCells)
+            return null;
+
+        LetterGrid grid = new LetterGrid(maxRow - minRow + 1, maxCol - minCol + 1);
+        Map<Blob, int[]> blobCells = new IdentityHashMap<>();
+        for (int i = 0; i < blobs.size(); i++) {
+            int row = (int) Math.rint(cells[i][1]) - minRow, col = (int) Math.rint(cells[i][0]) - minCol;
+            if (grid.blobs[row][col] != null)
+                return null;
+            Blob blob = blobs.get(i);
+            Character letter = letters.get(blob);
+            grid.blobs[row][col] = blob;
+            grid.letters[row][col] = letter == null ? ' ' : letter;
+            blobCells.put(blob, new int[] { row, col });
+        }
+
+        // Each edge lies along one direction of the grid, within some spread of the direction of the lattice
+        double[] spreads = new double[DIRECTIONS.length];
+        Arrays.fill(spreads, -1);
+        for (Blob blob : blobGraph.keySet()) {
+            int[] cell = blobCells.get(blob);
+            for (Blob neighbor : blobGraph.get(blob)) {
+                int[] neighborCell = blobCells.get(neighbor);
+                int direction = getDirection(neighborCell[0] - cell[0], neighborCell[1] - cell[1]);
+                if (direction == -1)
+                    return null;
+                double heading = blob.center.headingTo(neighbor.center);
+                grid.headings[cell[0]][cell[1]][direction] = heading;
+                spreads[direction] =
+                        Math.max(spreads[direction], angleBetween(heading, getHeading(lattice, direction)));
+            }
+        }
+        for (int i = 0; i < DIRECTIONS.length; i++)
+            for (int j = i + 1; j < DIRECTIONS.length; j++)
+                if (spreads[i] != -1 && spreads[j] != -1)
+                    grid.minTurnAngle = Math.min(grid.minTurnAngle,
+                        angleBetween(getHeading(lattice, i), getHeading(lattice, j)) - spreads[i] - spreads[j]);
+        return grid;
+    }
+
+    /**
+     * Returns the index of the direction with the given step, or -1 if it is not a step to a next cell.
+     */
+    private static int getDirection(int dRow, int dCol) {
+        for (int i = 0; i < DIRECTIONS.length; i++)
+            if (DIRECTIONS[i][0] == dRow && DIRECTIONS[i][1] == dCol)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the heading in degrees of the direction in the lattice.
+     */
+    private static double getHeading(double[] lattice, int direction) {
+        int dRow = DIRECTIONS[direction][0], dCol = DIRECTIONS[direction][1];
+        return Math.toDegrees(Math.atan2(dCol * lattice[4] + dRow * lattice[5], dCol * lattice[1] + dRow * lattice[2]));
+    }
+
+    private static double angleBetween(double heading1, double heading2) {
+        double angle = Math.abs(heading1 - heading2) % 360;
+        return Math.min(angle, 360 - angle);
+    }
+
+    private static Blob getMiddleBlob(List<Blob> blobs) {
+        double x = blobs.stream().mapToInt(blob -> blob.center.x).average().getAsDouble();
+        double y = blobs.stream().mapToInt(blob -> blob.center.y).average().getAsDouble();
+        Blob middle = blobs.get(0);
+        for (Blob blob : blobs)
+            if (Math.hypot(blob.center.x - x, blob.center.y - y) < Math.hypot(middle.center.x - x, middle.center.y - y))
+                middle = blob;
+        return middle;
+    }
+
+    /**
+     * Returns the median direction in radians from each blob to its nearest neighbor, modulo a quarter turn, which is
+     * the direction of either the rows or the columns of a grid.
+     */
+    private static double getRowAngle(Multimap<Blob, Blob> blobGraph) {
+        double[] angles = new double[blobGraph.keySet().size()];
+        int n = 0;
+        for (Blob blob : blobGraph.keySet()) {
+            int nearestDx = 0, nearestDy = 0;
+            long nearestDistance = Long.MAX_VALUE;
+            for (Blob neighbor : blobGraph.get(blob)) {
+                int dx = neighbor.center.x - blob.center.x, dy = neighbor.center.y - blob.center.y;
+                long distance = (long) dx * dx + (long) dy * dy;
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearestDx = dx;
+                    nearestDy = dy;
+                }
+            }
+            double angle = Math.atan2(nearestDy, nearestDx);
+            angles[n++] = angle - Math.PI / 2 * Math.floor(angle / (Math.PI / 2) + 0.5);
+        }
+        return median(angles, n);
+    }
+
+    /**
+     * Returns the median of the graph edges within an eighth of a turn of the given direction, each taken pointing in
+     * that direction, or null if there are none.
+     */
+    private static double[] getMedianEdge(Multimap<Blob, Blob> blobGraph, double angle) {
+        double cos = Math.cos(angle), sin = Math.sin(angle), tan = Math.tan(Math.PI / 8);
+        double[] dxs = new double[blobGraph.size()], dys = new double[blobGraph.size()];
+        int n = 0;
+        for (Blob blob : blobGraph.keySet())
+            for (Blob neighbor : blobGraph.get(blob)) {
+                int dx = neighbor.center.x - blob.center.x, dy = neighbor.center.y - blob.center.y;
+                double along = dx * cos + dy * sin, across = -dx * sin + dy * cos;
+                if (Math.abs(across) < Math.abs(along) * tan) {
+                    dxs[n] = along > 0 ? dx : -dx;
+                    dys[n++] = along > 0 ? dy : -dy;
+                }
+            }
+        return n == 0 ? null : new double[] { median(dxs, n), median(dys, n) };
+    }
+
+    /**
+     * Returns the (col, row) coordinates of each blob in the lattice {x0, x per col, x per row, y0, y per col, y per
+     * row}, or null if the lattice is degenerate.
+     */
+    private static double[][] place(List<Blob> blobs, double[] lattice) {
+        double det = lattice[1] * lattice[5] - lattice[2] * lattice[4];
+        if (Math.abs(det) < 1e-9)
+            return null;
+        double[][] cells = new double[blobs.size()][];
+        for (int i = 0; i < blobs.size(); i++) {
+            double dx = blobs.get(i).center.x - lattice[0], dy = blobs.get(i).center.y - lattice[3];
+            cells[i] = new double[] { (dx * lattice[5] - dy * lattice[2]) / det, (dy * lattice[1] - dx * lattice[4]) / det };
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the lattice that best fits the blob centers to the nearest cells of their coordinates, by least squares,
+     * or null if those cells do not determine one.
+     */
+    private static double[] fit(List<Blob> blobs, double[][] cells) {
+        double[][] normal = new double[3][3];
+        double[] xs = new double[3], ys = new double[3];
+        for (int i = 0; i < blobs.size(); i++) {
+            double[] v = { 1, Math.rint(cells[i][0]), Math.rint(cells[i][1]) };
+            for (int j = 0; j < 3; j++) {
+                for (int k = 0; k < 3; k++)
+                    normal[j][k] += v[j] * v[k];
+                xs[j] += v[j] * blobs.get(i).center.x;
+                ys[j] += v[j] * blobs.get(i).center.y;
+            }
+        }
+        double[] x = solve(normal, xs), y = solve(normal, ys);
+        return x == null || y == null ? null : new double[] { x[0], x[1], x[2], y[0], y[1], y[2] };
+    }
+
+    /**
+     * Solves the 3x3 system by Cramer's rule, returning null if it is singular.
+     */
+    private static double[] solve(double[][] a, double[] b) {
+        double det = det3(a[0], a[1], a[2]);
+        if (Math.abs(det) < 1e-9)
+            return null;
+        double[] solution = new double[3];
+        for (int j = 0; j < 3; j++) {
+            double[][] replaced = new double[3][];
+            for (int i = 0; i < 3; i++) {
+                replaced[i] = a[i].clone();
+                replaced[i][j] = b[i];
+            }
+            solution[j] = det3(replaced[0], replaced[1], replaced[2]) / det;
+        }
+        return solution;
+    }
+
+    private static double det3(double[] r0, double[] r1, double[] r2) {
+        return r0[0] * (r1[1] * r2[2] - r1[2] * r2[1]) - r0[1] * (r1[0] * r2[2] - r1[2] * r2[0])
+                + r0[2] * (r1[0] * r2[1] - r1[1] * r2[0]);
+    }
+
+    /**
+     * Returns the median of the first n values, reordering them.
+     */
+    private static double median(double[] values, int n) {
+        Arrays.sort(values, 0, n);
+        return values[n / 2];
+    }
+}
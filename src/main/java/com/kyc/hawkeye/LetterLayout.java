@@ -0,0 +1,33 @@
+package com.kyc.hawkeye;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * The letters found in an image and how they are arranged: everything the word search needs, and the output of all
+ * the expensive stages of a solve.
+ */
+final class LetterLayout {
+
+    final List<Blob> blobs;
+    final Multimap<Blob, Blob> blobGraph;
+    final Map<Blob, Character> letters;
+
+    LetterLayout(List<Blob> blobs, Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters) {
+        this.blobs = blobs;
+        this.blobGraph = blobGraph;
+        this.letters = letters;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by the layout, dominated by the pixel runs of its blobs.
+     */
+    int getMemoryUsage() {
+        int memoryUsage = 0;
+        for (Blob blob : blobs)
+            memoryUsage += 64 + 4 * blob.runs.length;
+        return memoryUsage + 32 * blobGraph.size() + 48 * letters.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Recognizes the text in an image of a single line. An engine is created for one tessdata path and character
+ * whitelist, and only used by the thread of the {@link OcrEnginePool} that created it.
+ */
+public interface OcrEngine {
+
+    String recognize(BufferedImage image) throws TesseractException;
+
+    /**
+     * Releases the engine, from the thread that created it.
+     */
+    default void close() {}
+
+    interface Factory {
+
+        OcrEngine create(String datapath, String allowedChars);
+    }
+}
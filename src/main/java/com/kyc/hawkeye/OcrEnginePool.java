@@ -0,0 +1,197 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.sourceforge.tess4j.Tesseract1;
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * A fixed set of threads for running OCR, each of which keeps its own engine for each of the MAX_ENGINES_PER_THREAD
+ * configurations (tessdata path and character whitelist) it has most recently been asked to use. Tesseract engines are
+ * expensive to initialize and not thread-safe, so they are created once per thread and reused for later requests.
+ * Engines are closed by their own thread when they are evicted or the pool is closed.
+ */
+public final class OcrEnginePool implements AutoCloseable {
+
+    private static final int SINGLE_LINE_PAGE_SEG_MODE = 7;
+    private static final int MAX_ENGINES_PER_THREAD = 4;
+    private static final int CLOSE_TIMEOUT_SECONDS = 10;
+
+    private static OcrEnginePool defaultPool;
+
+    private final int numThreads;
+    private final OcrEngine.Factory engineFactory;
+    private final ExecutorService executor;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Map<List<Object>, OcrEngine>> engines =
+            ThreadLocal.withInitial(() -> new LinkedHashMap<List<Object>, OcrEngine>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, OcrEngine> eldest) {
+                    if (size() <= MAX_ENGINES_PER_THREAD)
+                        return false;
+                    eldest.getValue().close();
+                    return true;
+                }
+            });
+
+    /**
+     * Creates a pool of threads that recognize text with Tesseract.
+     */
+    public OcrEnginePool(int numThreads) {
+        this(numThreads, OcrEnginePool::createTesseract);
+    }
+
+    /**
+     * Creates a pool of threads that recognize text with engines from the given factory, such as a stub recognizer
+     * for tests and benchmarks.
+     */
+    public OcrEnginePool(int numThreads, OcrEngine.Factory engineFactory) {
+        this.numThreads = numThreads;
+        this.engineFactory = engineFactory;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("ocr-%d").setDaemon(true).build();
+        this.executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = threadFactory.newThread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    closeEngines();
+                }
+            });
+            threads.add(thread);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a process-wide pool with one thread per processor, for solvers that are not given a pool.
+     */
+    public static synchronized OcrEnginePool getDefault() {
+        if (defaultPool == null)
+            defaultPool = new OcrEnginePool(Runtime.getRuntime().availableProcessors());
+        return defaultPool;
+    }
+
+    /**
+     * Initializes an engine for the given configuration on every thread of the pool, so that the first requests do
+     * not pay for it.
+     */
+    public void warmUp(String datapath, String allowedChars) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int i = 0; i < numThreads; i++)
+            executor.execute(() -> {
+                getEngine(datapath, allowedChars);
+                latch.countDown();
+                // Hold this thread until every thread has taken a task, so each one initializes its own engine
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        latch.await();
+    }
+
+    /**
+     * Queues the image of a single line of text for recognition with the given configuration.
+     */
+    Future<Result> recognize(BufferedImage image, String datapath, String allowedChars) {
+        long submitTime = System.nanoTime();
+        return executor.submit(() -> {
+            long startTime = System.nanoTime();
+            String text = getEngine(datapath, allowedChars).recognize(image);
+            return new Result(text, startTime - submitTime, System.nanoTime() - startTime);
+        });
+    }
+
+    /**
+     * Stops the threads, waiting for them to close their engines.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        // The executor terminates as its last thread exits, before the thread has closed its engines, so wait for the
+        // threads themselves
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        try {
+            for (Thread thread : threads)
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private OcrEngine getEngine(String datapath, String allowedChars) {
+        List<Object> key = ImmutableList.of(datapath, allowedChars);
+        return engines.get().computeIfAbsent(key, k -> engineFactory.create(datapath, allowedChars));
+    }
+
+    private void closeEngines() {
+        engines.get().values().forEach(OcrEngine::close);
+        engines.remove();
+    }
+
+    private static OcrEngine createTesseract(String datapath, String allowedChars) {
+        return new TesseractEngine(datapath, allowedChars);
+    }
+
+    /**
+     * A Tesseract engine that is initialized once and then recognizes many images. Tesseract1.doOCR creates,
+     * initializes and deletes the native engine on every call, so this calls the steps it is made of directly.
+     */
+    private static final class TesseractEngine extends Tesseract1 implements OcrEngine {
+
+        TesseractEngine(String datapath, String allowedChars) {
+            setDatapath(datapath);
+            setPageSegMode(SINGLE_LINE_PAGE_SEG_MODE);
+            setTessVariable("tessedit_char_whitelist", allowedChars);
+            setTessVariable("load_system_dawg", "0");
+            setTessVariable("load_freq_dawg", "0");
+            init();
+            setTessVariables();
+        }
+
+        @Override
+        public String recognize(BufferedImage image) throws TesseractException {
+            // Forget what was learned from earlier images, so the text does not depend on which thread recognizes it
+            TessBaseAPIClearAdaptiveClassifier(getHandle());
+            try {
+                setImage(image, null);
+            } catch (IOException e) {
+                throw new TesseractException(e);
+            }
+            return getOCRText();
+        }
+
+        @Override
+        public void close() {
+            dispose();
+        }
+    }
+
+    static final class Result {
+
+        final String text;
+        final long waitNanos;
+        final long ocrNanos;
+
+        Result(String text, long waitNanos, long ocrNanos) {
+            this.text = text;
+            this.waitNanos = waitNanos;
+            this.ocrNanos = ocrNanos;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.kyc.hawkeye;
+
+/**
+ * Statistics of the letter recognition of one solve. Of all blobs, cache hits took their letter from the glyph
+ * cache, cluster hits took it from a similar glyph recognized in the same solve, and the rest were sent to OCR.
+ * Batches whose text did not have one letter per glyph are retried one glyph at a time, each as a batch of its own.
+ * Wait time is spent queued for a free OCR thread, and OCR time is spent recognizing text, summed over all batches.
+ * Statistics of regions of an image solved in parallel are each collected separately and then added together.
+ */
+public final class OcrStats {
+
+    public int numBlobs;
+    public int numCacheHits;
+    public int numClusterHits;
+    public int numBatches;
+    public int numRetriedBatches;
+    public long waitNanos;
+    public long ocrNanos;
+
+    synchronized void add(OcrStats other) {
+        numBlobs += other.numBlobs;
+        numCacheHits += other.numCacheHits;
+        numClusterHits += other.numClusterHits;
+        numBatches += other.numBatches;
+        numRetriedBatches += other.numRetriedBatches;
+        waitNanos += other.waitNanos;
+        ocrNanos += other.ocrNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+            "%d blobs (%d cache hits, %d cluster hits), %d OCR batches (%d retried), %d ms queued, %d ms in OCR",
+            numBlobs, numCacheHits, numClusterHits, numBatches, numRetriedBatches, waitNanos / 1000000,
+            ocrNanos / 1000000);
+    }
+}
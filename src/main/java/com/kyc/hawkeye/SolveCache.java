@@ -0,0 +1,92 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Cache of search results keyed by a hash of the image's pixels and the configuration, for clients that resubmit the
+ * same image while tuning the configuration. Results are cached in two stages: the letter layout, which only depends
+ * on the fields in {@link WordsearchSolverConfiguration#getLayoutKey()}, and the words found in it, so changing only
+ * a word search field such as the bend angle skips straight to the word search.
+ */
+public final class SolveCache {
+
+    private final Cache<List<Object>, LetterLayout> layouts;
+    private final Cache<List<Object>, WordsearchResult> results;
+
+    /**
+     * Creates a cache that holds letter layouts and results up to about the given total numbers of bytes each.
+     */
+    public SolveCache(long maxLayoutBytes, long maxResultBytes) {
+        this.layouts = CacheBuilder.newBuilder()
+                .maximumWeight(maxLayoutBytes)
+                .<List<Object>, LetterLayout> weigher((key, layout) -> layout.getMemoryUsage())
+                .recordStats()
+                .build();
+        this.results = CacheBuilder.newBuilder()
+                .maximumWeight(maxResultBytes)
+                .<List<Object>, WordsearchResult> weigher((key, result) -> result.getMemoryUsage())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the result of {@link WordsearchSolver#solve()}, reusing the results or letter layout of earlier
+     * searches of the same image where the configuration allows. Concurrent searches of the same image and
+     * configuration share one load.
+     */
+    public WordsearchResult search(WordsearchSolver solver) throws TesseractException {
+        WordsearchSolverConfiguration config = solver.getConfig();
+        List<Object> layoutKey = ImmutableList.of(hashPixels(solver.getImage()), config.getLayoutKey());
+        List<Object> resultKey = ImmutableList.of(layoutKey, config.getWordsKey());
+        while (true)
+            try {
+                return results.get(resultKey, () -> solver.search(layouts.get(layoutKey, solver::getLetterLayout)));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                Throwable cause = e.getCause();
+                // Unwrap the exception of the layout load nested in the result load
+                if (cause instanceof ExecutionException || cause instanceof UncheckedExecutionException)
+                    cause = cause.getCause();
+                // A shared load is cancelled with the search running it, such as when that search times out. Failed
+                // loads are not cached, so the searches waiting on it load again unless they were cancelled too.
+                if (cause instanceof CancellationException && !solver.isCancelled())
+                    continue;
+                Throwables.propagateIfInstanceOf(cause, TesseractException.class);
+                throw Throwables.propagate(cause);
+            }
+    }
+
+    public CacheStats getLayoutStats() {
+        return layouts.stats();
+    }
+
+    public CacheStats getResultStats() {
+        return results.stats();
+    }
+
+    private static HashCode hashPixels(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        Hasher hasher = Hashing.murmur3_128().newHasher().putInt(width).putInt(height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row)
+                hasher.putInt(rgb);
+        }
+        return hasher.hash();
+    }
+}
@@ -0,0 +1,118 @@
+package com.kyc.hawkeye;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measurements of one solve: the wall time and bytes allocated by each stage that ran, and counts of the work done by
+ * those stages. Stages whose output was reused from a cache or session are left out. Allocated bytes only include the
+ * solving thread, so they leave out OCR and a parallel word search, which run on other threads, and are -1 if the JVM
+ * cannot measure them. When regions of an image are solved in parallel, the metrics of their stages are summed.
+ */
+public final class SolveMetrics {
+
+    public enum Stage {
+        DARK_PIXELS, BLOBS, CLEANED_BLOBS, BLOB_GRAPH, LETTERS, VALID_WORDS, CLEANED_VALID_WORDS,
+    }
+
+    public static final class StageMetrics {
+
+        public final long wallNanos;
+        public final long allocatedBytes;
+
+        StageMetrics(long wallNanos, long allocatedBytes) {
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private final ThreadLocal<long[]> start = ThreadLocal.withInitial(() -> new long[2]);
+
+    public synchronized Map<Stage, StageMetrics> getStages() {
+        return Collections.unmodifiableMap(new EnumMap<>(stages));
+    }
+
+    /**
+     * Returns the counts recorded by the stages that ran, such as "blobs" or "dfsNodes", in the order they were
+     * recorded.
+     */
+    public synchronized Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+    }
+
+    /**
+     * Marks the start of a stage on the current thread.
+     */
+    void start() {
+        long[] start = this.start.get();
+        start[1] = getAllocatedBytes();
+        start[0] = System.nanoTime();
+    }
+
+    /**
+     * Adds the time and allocations since the last call to {@link #start()} on the current thread to the metrics of
+     * the given stage.
+     */
+    void stop(Stage stage) {
+        long[] start = this.start.get();
+        long wallNanos = System.nanoTime() - start[0];
+        long allocatedBytes = getAllocatedBytes();
+        allocatedBytes = allocatedBytes == -1 || start[1] == -1 ? -1 : allocatedBytes - start[1];
+        synchronized (this) {
+            StageMetrics previous = stages.get(stage);
+            if (previous != null) {
+                wallNanos += previous.wallNanos;
+                allocatedBytes = allocatedBytes == -1 || previous.allocatedBytes == -1
+                        ? -1 : allocatedBytes + previous.allocatedBytes;
+            }
+            stages.put(stage, new StageMetrics(wallNanos, allocatedBytes));
+        }
+    }
+
+    synchronized void count(String name, long value) {
+        counts.merge(name, value, Long::sum);
+    }
+
+    /**
+     * Returns the metrics as a single-line JSON object.
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\": {");
+        stages.forEach((stage, metrics) -> json
+                .append(json.charAt(json.length() - 1) == '{' ? "" : ", ")
+                .append('"').append(stage.name().toLowerCase()).append("\": {\"wallMillis\": ")
+                .append(metrics.wallNanos / 1e6).append(", \"allocatedBytes\": ").append(metrics.allocatedBytes).append('}'));
+        json.append("}, \"counts\": {");
+        counts.forEach((name, value) -> json
+                .append(json.charAt(json.length() - 1) == '{' ? "" : ", ")
+                .append('"').append(name).append("\": ").append(value));
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder s = new StringBuilder();
+        stages.forEach((stage, metrics) -> s
+                .append(s.length() == 0 ? "" : ", ")
+                .append(stage.name().toLowerCase()).append(' ').append(metrics.wallNanos / 1000000).append(" ms")
+                .append(metrics.allocatedBytes == -1 ? "" : "/" + (metrics.allocatedBytes >> 10) + " KB"));
+        counts.forEach((name, value) -> s.append(s.length() == 0 ? "" : ", ").append(value).append(' ').append(name));
+        return s.toString();
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
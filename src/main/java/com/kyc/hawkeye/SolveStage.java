@@ -0,0 +1,38 @@
+package com.kyc.hawkeye;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The stages of a solve whose outputs can be kept and reused, each with the configuration fields it depends on
+ * directly and the stages whose outputs it uses.
+ */
+public enum SolveStage {
+
+    BLOBS(config -> Arrays.asList(config.darkCutoff)),
+    CLEANED_BLOBS(config -> Arrays.asList(config.minBlobSeparation, config.minBlobSizeRelative), BLOBS),
+    BLOB_GRAPH(config -> Arrays.asList(config.maxBlobSeparationRatio), CLEANED_BLOBS),
+    LETTERS(config -> Arrays.asList(config.blobBorderForOCR, config.datapathForOCR, config.allowedCharsForOCR,
+        config.maxBatchForOCR, config.glyphTolerance), CLEANED_BLOBS),
+    VALID_WORDS(config -> Arrays.asList(config.dictionaryPath, config.allowedCharsForOCR, config.maxWordBendAngle,
+        config.straightWordsOnly, config.detectGrid, config.gridTolerance), BLOB_GRAPH, LETTERS),
+    CLEANED_VALID_WORDS(config -> Arrays.asList(config.minWordLength), VALID_WORDS);
+
+    private final Function<WordsearchSolverConfiguration, List<Object>> key;
+    final List<SolveStage> inputs;
+
+    SolveStage(Function<WordsearchSolverConfiguration, List<Object>> key, SolveStage... inputs) {
+        this.key = key;
+        this.inputs = ImmutableList.copyOf(inputs);
+    }
+
+    /**
+     * Returns the values of the configuration fields that this stage depends on directly.
+     */
+    List<Object> getKey(WordsearchSolverConfiguration config) {
+        return key.apply(config);
+    }
+}
@@ -0,0 +1,314 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Solves many images with one configuration, sharing the dictionary, OCR engines and glyph cache between them.
+ * Images are decoded on one set of workers and solved on another, with a bounded number of images in flight, so
+ * decoding, image processing, OCR (on the OCR engine pool) and word search of different images overlap.
+ *
+ * Results are appended to a JSON lines file as each image finishes, one object per image, either
+ * {"file": ..., "words": {...}} with the words in the chosen encoding, {"file": ..., "regions": [{...}, ...]} with the
+ * words of each region if the configuration separates regions, or {"file": ..., "error": ...}. Solving into a file
+ * that already has results skips the images solved successfully and replaces the lines of the failed ones, so an
+ * interrupted run can be resumed. Progress is logged every 10 seconds.
+ */
+public final class WordsearchBatchSolver {
+
+    private static final String FILE_PREFIX = "{\"file\": ";
+    private static final String WORDS_PREFIX = ", \"words\": ";
+    private static final String REGIONS_PREFIX = ", \"regions\": ";
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final WordsearchSolverConfiguration config;
+    private final Dictionary dictionary;
+    private final OcrEnginePool ocrEnginePool;
+    private final GlyphCache glyphCache;
+    private final int numWorkers;
+    private WordsearchResult.Encoding encoding = WordsearchResult.Encoding.BOXES;
+
+    private final AtomicInteger numSolved = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+    private final AtomicInteger numSkipped = new AtomicInteger();
+    private final AtomicLong lastProgressNanos = new AtomicLong();
+
+    public WordsearchBatchSolver(WordsearchSolverConfiguration config, Dictionary dictionary,
+            OcrEnginePool ocrEnginePool, GlyphCache glyphCache, int numWorkers) {
+        this.config = config;
+        this.dictionary = dictionary;
+        this.ocrEnginePool = ocrEnginePool;
+        this.glyphCache = glyphCache;
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Sets how the letters of each word are written. Defaults to bounding boxes.
+     */
+    public void setEncoding(WordsearchResult.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    public int getNumSolved() {
+        return numSolved.get();
+    }
+
+    public int getNumFailed() {
+        return numFailed.get();
+    }
+
+    public int getNumSkipped() {
+        return numSkipped.get();
+    }
+
+    /**
+     * Solves every image readable by ImageIO under the directory, in path order, naming each by its path relative to
+     * the directory.
+     */
+    public void solveDirectory(Path directory, Path output) throws IOException, InterruptedException {
+        Set<String> suffixes = Stream.of(ImageIO.getReaderFileSuffixes())
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+        List<Path> images;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            images = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        int dot = name.lastIndexOf('.');
+                        return dot != -1 && suffixes.contains(name.substring(dot + 1).toLowerCase());
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        solve(images.iterator(), directory, output);
+    }
+
+    /**
+     * Solves the images, naming each by its path relative to the base directory. Returns once every image has been
+     * solved or has failed.
+     */
+    public void solve(Iterator<Path> images, Path baseDirectory, Path output) throws IOException, InterruptedException {
+        Set<String> done = readSolvedFiles(output);
+        lastProgressNanos.set(System.nanoTime());
+        int maxInFlight = 2 * numWorkers;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+        ExecutorService decodeExecutor = Executors.newFixedThreadPool(
+            numWorkers, new ThreadFactoryBuilder().setNameFormat("decode-%d").setDaemon(true).build());
+        ExecutorService solveExecutor = Executors.newFixedThreadPool(
+            numWorkers, new ThreadFactoryBuilder().setNameFormat("batch-solver-%d").setDaemon(true).build());
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+            while (images.hasNext() && writeError.get() == null) {
+                Path image = images.next();
+                String file = baseDirectory.relativize(image).toString();
+                if (done.contains(file)) {
+                    numSkipped.incrementAndGet();
+                    continue;
+                }
+                inFlight.acquire();
+                CompletableFuture
+                        .supplyAsync(() -> decode(image), decodeExecutor)
+                        .thenApplyAsync(this::solve, solveExecutor)
+                        .whenComplete((result, e) -> {
+                            try {
+                                writeLine(out, file, result, e);
+                            } catch (IOException ioe) {
+                                writeError.compareAndSet(null, ioe);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+            }
+            inFlight.acquire(maxInFlight);
+            if (writeError.get() != null)
+                throw writeError.get();
+        } finally {
+            decodeExecutor.shutdownNow();
+            solveExecutor.shutdownNow();
+        }
+    }
+
+    private static BufferedImage decode(Path path) {
+        try {
+            BufferedImage image = ImageIO.read(path.toFile());
+            if (image == null)
+                throw new IOException("Unsupported image format");
+            return image;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private List<WordsearchResult> solve(BufferedImage image) {
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        solver.setOcrEnginePool(ocrEnginePool);
+        solver.setGlyphCache(glyphCache);
+        try {
+            return config.separateRegions ? solver.solveRegions() : Collections.singletonList(solver.solve());
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void writeLine(Writer out, String file, List<WordsearchResult> results, Throwable e) throws IOException {
+        StringWriter line = new StringWriter();
+        line.write(FILE_PREFIX);
+        WordsearchResult.writeJsonString(line, file);
+        if (e == null) {
+            if (config.separateRegions) {
+                line.write(REGIONS_PREFIX + "[");
+                for (int i = 0; i < results.size(); i++) {
+                    if (i > 0)
+                        line.write(", ");
+                    results.get(i).writeJson(line, encoding);
+                }
+                line.write(']');
+            } else {
+                line.write(WORDS_PREFIX);
+                results.get(0).writeJson(line, encoding);
+            }
+            numSolved.incrementAndGet();
+        } else {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            line.write(", \"error\": ");
+            WordsearchResult.writeJsonString(line, cause.toString());
+            numFailed.incrementAndGet();
+        }
+        line.write("}\n");
+        synchronized (out) {
+            out.write(line.toString());
+            out.flush();
+        }
+        // Long runs report their progress every so often, from whichever image finishes first after the interval
+        long now = System.nanoTime(), lastProgress = lastProgressNanos.get();
+        if (now - lastProgress >= PROGRESS_INTERVAL_NANOS && lastProgressNanos.compareAndSet(lastProgress, now))
+            System.out.println("Solved " + numSolved.get() + " images so far (" + numFailed.get() + " failed, "
+                    + numSkipped.get() + " already solved)");
+    }
+
+    /**
+     * Returns the files solved successfully in an earlier run into the output, first rewriting it without the lines
+     * of failed files, which are retried, and any final line left incomplete by an interrupted run. The output so
+     * holds at most one line per file.
+     */
+    private static Set<String> readSolvedFiles(Path output) throws IOException {
+        Set<String> solved = new HashSet<>();
+        if (!Files.exists(output))
+            return solved;
+        byte[] bytes = Files.readAllBytes(output);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n')
+            length--;
+        StringBuilder solvedLines = new StringBuilder();
+        for (String line : new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n")) {
+            StringBuilder file = new StringBuilder();
+            int end = readFileName(line, file);
+            if (end != -1 && (line.startsWith(WORDS_PREFIX, end) || line.startsWith(REGIONS_PREFIX, end))) {
+                solved.add(file.toString());
+                solvedLines.append(line).append('\n');
+            }
+        }
+        byte[] solvedBytes = solvedLines.toString().getBytes(StandardCharsets.UTF_8);
+        if (solvedBytes.length < bytes.length) {
+            // Replace the output in one move, so that an interruption leaves either the old or the new one
+            Path newOutput = Files.createTempFile(output.toAbsolutePath().getParent(), "batch", ".jsonl");
+            Files.write(newOutput, solvedBytes);
+            Files.move(newOutput, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return solved;
+    }
+
+    /**
+     * Reads the file name at the start of a line written by writeLine, returning the index after its closing quote,
+     * or -1 if the line does not start with a complete file name.
+     */
+    static int readFileName(String line, StringBuilder file) {
+        if (!line.startsWith(FILE_PREFIX + '"'))
+            return -1;
+        for (int i = FILE_PREFIX.length() + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"')
+                return i + 1;
+            if (c != '\\') {
+                file.append(c);
+            } else if (i + 1 == line.length()) {
+                return -1;
+            } else if (line.charAt(i + 1) != 'u') {
+                file.append(line.charAt(++i));
+            } else {
+                if (i + 6 > line.length())
+                    return -1;
+                int codeUnit = 0;
+                for (int j = i + 2; j < i + 6; j++) {
+                    int digit = Character.digit(line.charAt(j), 16);
+                    if (digit == -1)
+                        return -1;
+                    codeUnit = 16 * codeUnit + digit;
+                }
+                file.append((char) codeUnit);
+                i += 5;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Solves the images in a directory from the command line: WordsearchBatchSolver directory output.jsonl. The
+     * number of workers, OCR threads and the encoding ("points", "boxes" or "runs") are set by the system properties
+     * workers, ocrThreads and format, and -DseparateRegions=true solves each region of an image separately.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: WordsearchBatchSolver <directory> <output.jsonl>");
+            System.exit(2);
+        }
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.separateRegions = Boolean.getBoolean("separateRegions");
+        Dictionary dictionary = Dictionary.get(config.dictionaryPath, config.allowedCharsForOCR);
+        int workers = Integer.getInteger("workers", Runtime.getRuntime().availableProcessors());
+        ImageIO.setUseCache(false);
+        try (OcrEnginePool ocrEnginePool =
+                new OcrEnginePool(Integer.getInteger("ocrThreads", Runtime.getRuntime().availableProcessors()))) {
+            ocrEnginePool.warmUp(config.datapathForOCR, config.allowedCharsForOCR);
+            WordsearchBatchSolver batchSolver =
+                    new WordsearchBatchSolver(config, dictionary, ocrEnginePool, GlyphCache.getDefault(), workers);
+            batchSolver.setEncoding(
+                WordsearchResult.Encoding.valueOf(System.getProperty("format", "boxes").toUpperCase()));
+            long startTime = System.nanoTime();
+            batchSolver.solveDirectory(Paths.get(args[0]), Paths.get(args[1]));
+            System.out.println("Solved " + batchSolver.getNumSolved() + " images (" + batchSolver.getNumFailed()
+                    + " failed, " + batchSolver.getNumSkipped() + " already solved) in "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.kyc.hawkeye;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The words found in an image, each with the blobs of its letters in order. Duplicate words are removed, keeping the
+ * first one found.
+ */
+public final class WordsearchResult {
+
+    /**
+     * How the letters of each word are described in JSON output.
+     */
+    public enum Encoding {
+        /** Every pixel of the word, as [x1, y1, x2, y2, ...]. */
+        POINTS,
+        /** The bounding box of each letter, as [[minX, minY, maxX, maxY], ...]. */
+        BOXES,
+        /** The horizontal runs of pixels of each letter, as [[y, startX, endX, y, startX, endX, ...], ...]. */
+        RUNS,
+    }
+
+    public static final WordsearchResult EMPTY = new WordsearchResult(Collections.emptyMap());
+
+    private final Map<String, List<Blob>> words;
+
+    WordsearchResult(Map<String, List<Blob>> words) {
+        this.words = words;
+    }
+
+    public Set<String> getWords() {
+        return words.keySet();
+    }
+
+    /**
+     * Returns a map from the word to the list of points in the image that compose the word, in the format [x1, y1, x2,
+     * y2, x3, y3, ... x_n, y_n].
+     */
+    public Map<String, List<Integer>> toPoints() {
+        Map<String, List<Integer>> points = new LinkedHashMap<>();
+        words.forEach((word, blobs) -> {
+            List<Integer> wordPoints = new ArrayList<>();
+            for (Blob blob : blobs)
+                for (int i = 0; i < blob.runs.length; i += 3)
+                    for (int x = blob.runs[i + 1]; x <= blob.runs[i + 2]; x++) {
+                        wordPoints.add(x);
+                        wordPoints.add(blob.runs[i]);
+                    }
+            points.put(word, wordPoints);
+        });
+        return points;
+    }
+
+    /**
+     * Writes the result as a JSON object from each word to the description of its letters, without building the
+     * whole document in memory.
+     */
+    public void writeJson(Writer out, Encoding encoding) throws IOException {
+        out.write('{');
+        boolean firstWord = true;
+        for (Map.Entry<String, List<Blob>> entry : words.entrySet()) {
+            if (!firstWord)
+                out.write(", ");
+            firstWord = false;
+            writeJsonString(out, entry.getKey());
+            out.write(": [");
+            boolean first = true;
+            for (Blob blob : entry.getValue()) {
+                if (encoding == Encoding.POINTS) {
+                    for (int i = 0; i < blob.runs.length; i += 3)
+                        for (int x = blob.runs[i + 1]; x <= blob.runs[i + 2]; x++) {
+                            out.write(first ? "" : ", ");
+                            out.write(x + ", " + blob.runs[i]);
+                            first = false;
+                        }
+                } else {
+                    out.write(first ? "[" : ", [");
+                    if (encoding == Encoding.BOXES)
+                        out.write(blob.minX + ", " + blob.minY + ", " + blob.maxX + ", " + blob.maxY);
+                    else
+                        for (int i = 0; i < blob.runs.length; i++)
+                            out.write((i == 0 ? "" : ", ") + blob.runs[i]);
+                    out.write(']');
+                    first = false;
+                }
+            }
+            out.write(']');
+        }
+        out.write('}');
+        out.flush();
+    }
+
+    /**
+     * Writes the string as a quoted JSON string.
+     */
+    static void writeJsonString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\')
+                out.write("\\" + c);
+            else if (c < ' ')
+                out.write(String.format("\\u%04x", (int) c));
+            else
+                out.write(c);
+        }
+        out.write('"');
+    }
+
+    /**
+     * Writes the result in a packed binary format for programmatic clients. All numbers are big-endian:
+     *
+     * <pre>
+     * int numWords
+     * numWords times:
+     *     short wordLength, then the word in modified UTF-8 (as by DataOutput.writeUTF)
+     *     short numLetters
+     *     numLetters times:
+     *         int minX, int minY, int maxX, int maxY
+     *         int numRuns
+     *         numRuns times: int y, int startX, int endX
+     * </pre>
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(words.size());
+        for (Map.Entry<String, List<Blob>> entry : words.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeShort(entry.getValue().size());
+            for (Blob blob : entry.getValue()) {
+                data.writeInt(blob.minX);
+                data.writeInt(blob.minY);
+                data.writeInt(blob.maxX);
+                data.writeInt(blob.maxY);
+                data.writeInt(blob.getNumRuns());
+                for (int run : blob.runs)
+                    data.writeInt(run);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by the result, not counting the blobs, which are shared
+     * with the letter layout.
+     */
+    int getMemoryUsage() {
+        return words.values().stream().mapToInt(blobs -> 96 + 8 * blobs.size()).sum();
+    }
+}
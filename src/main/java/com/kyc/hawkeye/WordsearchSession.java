@@ -0,0 +1,111 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Multimap;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Keeps the output of every stage of solving one image, so that solving it again with a different configuration
+ * only reruns the stages whose configuration fields changed and the stages that depend on them. For example, changing
+ * only the minimum word length reruns none of the image processing, OCR or word search.
+ */
+public final class WordsearchSession {
+
+    private final BufferedImage image;
+    private final Map<SolveStage, List<Object>> keys = new EnumMap<>(SolveStage.class);
+    private final Set<SolveStage> lastRunStages = EnumSet.noneOf(SolveStage.class);
+
+    private List<Blob> blobs;
+    private List<Blob> cleanedBlobs;
+    private Multimap<Blob, Blob> blobGraph;
+    private Map<Blob, Character> letters;
+    private List<List<Blob>> validWords;
+    private WordsearchResult result;
+
+    public WordsearchSession(BufferedImage image) {
+        this.image = image;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the result of {@link WordsearchSolver#solve()} for the given solver, which must be for this session's
+     * image and leave the image unchanged, rerunning only the stages whose output is out of date.
+     */
+    public synchronized WordsearchResult search(WordsearchSolver solver) throws TesseractException {
+        WordsearchSolverConfiguration config = solver.getConfig();
+        Preconditions.checkArgument(solver.getImage() == image, "Solver is for a different image");
+        Preconditions.checkArgument(config.preserveImage, "Solver must preserve the image");
+
+        lastRunStages.clear();
+        if (start(SolveStage.BLOBS, config))
+            blobs = solver.getBlobs();
+        if (start(SolveStage.CLEANED_BLOBS, config))
+            cleanedBlobs = solver.getCleanedBlobs(blobs);
+        if (start(SolveStage.BLOB_GRAPH, config))
+            blobGraph = solver.getBlobGraph(cleanedBlobs);
+        if (start(SolveStage.LETTERS, config))
+            letters = solver.getLetters(cleanedBlobs);
+        if (start(SolveStage.VALID_WORDS, config))
+            validWords = solver.findValidWords(blobGraph, letters);
+        if (start(SolveStage.CLEANED_VALID_WORDS, config))
+            result = solver.toResult(solver.getCleanedValidWords(validWords), letters);
+        // Only mark the stages up to date once they have all finished, in case the search is cancelled part way
+        for (SolveStage stage : lastRunStages)
+            keys.put(stage, stage.getKey(config));
+        return result;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by the session: the image's pixels and the output of every
+     * stage kept so far, dominated by the pixel runs of the blobs.
+     */
+    public synchronized long getMemoryUsage() {
+        long memoryUsage = 4L * image.getWidth() * image.getHeight();
+        for (List<Blob> stageBlobs : Arrays.asList(blobs, cleanedBlobs))
+            if (stageBlobs != null)
+                for (Blob blob : stageBlobs)
+                    memoryUsage += 64 + 4 * blob.runs.length;
+        if (blobGraph != null)
+            memoryUsage += 32 * blobGraph.size();
+        if (letters != null)
+            memoryUsage += 48 * letters.size();
+        if (validWords != null)
+            memoryUsage += validWords.stream().mapToInt(word -> 96 + 8 * word.size()).sum();
+        if (result != null)
+            memoryUsage += result.getMemoryUsage();
+        return memoryUsage;
+    }
+
+    /**
+     * Returns the stages that were rerun by the last search.
+     */
+    public synchronized Set<SolveStage> getLastRunStages() {
+        return EnumSet.copyOf(lastRunStages);
+    }
+
+    /**
+     * Returns whether the stage needs to be rerun, because its configuration fields changed or one of its inputs is
+     * being rerun. If so, marks it out of date until the search finishes.
+     */
+    private boolean start(SolveStage stage, WordsearchSolverConfiguration config) {
+        boolean isStale = !stage.getKey(config).equals(keys.get(stage))
+                || stage.inputs.stream().anyMatch(lastRunStages::contains);
+        if (isStale) {
+            keys.remove(stage);
+            lastRunStages.add(stage);
+        }
+        return isStale;
+    }
+}
@@ -5,43 +5,126 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.MultimapBuilder;
 
-import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 
 public class WordsearchSolver {
 
+    private static final ThreadLocal<int[]> wordBuffer = ThreadLocal.withInitial(() -> new int[16]);
+
     private final BufferedImage image;
     private final WordsearchSolverConfiguration config;
     private final int width, height;
-    private final Set<String> dictionary;
+    private final Dictionary dictionary;
+    private ExecutorService executor = ForkJoinPool.commonPool();
+    private OcrEnginePool ocrEnginePool;
+    private GlyphCache glyphCache = GlyphCache.getDefault();
+    private final OcrStats ocrStats = new OcrStats();
+    private final SolveMetrics metrics = new SolveMetrics();
+    private volatile boolean cancelled;
 
     public WordsearchSolver(BufferedImage image, WordsearchSolverConfiguration config) throws IOException {
+        this(image, config, Dictionary.get(config.dictionaryPath, config.allowedCharsForOCR));
+    }
+
+    public WordsearchSolver(BufferedImage image, WordsearchSolverConfiguration config, Dictionary dictionary) {
         this.image = image;
         this.config = config;
         this.width = image.getWidth();
         this.height = image.getHeight();
-        this.dictionary = Files.lines(Paths.get(config.dictionaryPath)).map(s -> s.trim().toUpperCase()).collect(Collectors.toSet());
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Sets the executor used to search from each start blob concurrently when parallelWordSearch is enabled. Defaults
+     * to the common fork-join pool.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the pool of OCR engines used to recognize letters. Defaults to a process-wide pool, created the first time
+     * a solver without a pool recognizes letters.
+     */
+    public void setOcrEnginePool(OcrEnginePool ocrEnginePool) {
+        this.ocrEnginePool = ocrEnginePool;
+    }
+
+    /**
+     * Sets the cache of letters recognized for glyphs. Defaults to a process-wide cache.
+     */
+    public void setGlyphCache(GlyphCache glyphCache) {
+        this.glyphCache = glyphCache;
+    }
+
+    /**
+     * Returns the statistics of the letter recognition run by this solver so far.
+     */
+    public OcrStats getOcrStats() {
+        return ocrStats;
+    }
+
+    /**
+     * Returns the time, allocations and counts of the stages run by this solver so far.
+     */
+    public SolveMetrics getMetrics() {
+        return metrics;
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    WordsearchSolverConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * Stops a search in progress on another thread, which then throws a CancellationException. Interrupting the
+     * searching thread has the same effect.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether the search was cancelled, or the searching thread interrupted.
+     */
+    boolean isCancelled() {
+        return cancelled || Thread.currentThread().isInterrupted();
     }
 
     /**
@@ -49,181 +132,564 @@ public class WordsearchSolver {
      * compose the word, in the format [x1, y1, x2, y2, x3, y3, ... x_n, y_n].
      */
     public Map<String, List<Integer>> search() throws TesseractException {
-        boolean[][] darkPixels = getDarkPixels();
-        List<Blob> blobs = findBlobs(darkPixels);
+        return solve().toPoints();
+    }
+
+    /**
+     * Returns the words found in the image together with the blobs of their letters.
+     */
+    public WordsearchResult solve() throws TesseractException {
+        return search(getLetterLayout());
+    }
+
+    /**
+     * Returns the words found in each separate region of the image, such as each puzzle on a page with several. A
+     * region is a group of letters connected through the blob graph, so regions are separated by gaps much wider than
+     * the spacing of their letters. Regions are recognized and searched independently on the executor, in parallel.
+     */
+    public List<WordsearchResult> solveRegions() throws TesseractException {
+        List<Blob> blobs = getBlobs();
+        checkCancelled();
         List<Blob> cleanedBlobs = getCleanedBlobs(blobs);
+        checkCancelled();
         Multimap<Blob, Blob> blobGraph = getBlobGraph(cleanedBlobs);
+        checkCancelled();
+        List<Callable<WordsearchResult>> tasks = new ArrayList<>();
+        for (List<Blob> region : getRegions(cleanedBlobs, blobGraph))
+            tasks.add(() -> {
+                Multimap<Blob, Blob> regionGraph = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+                for (Blob blob : region)
+                    regionGraph.putAll(blob, blobGraph.get(blob));
+                Map<Blob, Character> letters = getLetters(region);
+                checkCancelled();
+                return search(new LetterLayout(region, regionGraph, letters));
+            });
+        List<WordsearchResult> results = new ArrayList<>();
+        try {
+            for (Future<WordsearchResult> future : executor.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Region search interrupted");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), TesseractException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Splits the blobs into the connected components of the blob graph (ignoring the direction of edges), each in the
+     * order of the blobs, ordered by their first blob.
+     */
+    List<List<Blob>> getRegions(List<Blob> blobs, Multimap<Blob, Blob> blobGraph) {
+        Map<Blob, Integer> indices = new IdentityHashMap<>();
+        for (Blob blob : blobs)
+            indices.put(blob, indices.size());
+        int[] parents = new int[blobs.size()];
+        for (int i = 0; i < parents.length; i++)
+            parents[i] = i;
+        blobGraph.entries().forEach(edge -> {
+            int root1 = findRoot(parents, indices.get(edge.getKey()));
+            int root2 = findRoot(parents, indices.get(edge.getValue()));
+            parents[Math.max(root1, root2)] = Math.min(root1, root2);
+        });
+        Map<Integer, List<Blob>> regions = new LinkedHashMap<>();
+        for (int i = 0; i < parents.length; i++)
+            regions.computeIfAbsent(findRoot(parents, i), root -> new ArrayList<>()).add(blobs.get(i));
+        return new ArrayList<>(regions.values());
+    }
+
+    private static int findRoot(int[] parents, int i) {
+        while (parents[i] != i)
+            i = parents[i] = parents[parents[i]];
+        return i;
+    }
+
+    /**
+     * Runs every stage of the search up to and including recognizing the letters.
+     */
+    LetterLayout getLetterLayout() throws TesseractException {
+        List<Blob> blobs = getBlobs();
+        checkCancelled();
+        List<Blob> cleanedBlobs = getCleanedBlobs(blobs);
+        checkCancelled();
+        Multimap<Blob, Blob> blobGraph = getBlobGraph(cleanedBlobs);
+        checkCancelled();
         Map<Blob, Character> letters = getLetters(cleanedBlobs);
-        List<List<Blob>> validWords = findValidWords(blobGraph, letters);
-        List<List<Blob>> cleanedValidWords = getCleanedValidWords(validWords);
-        return cleanedValidWords.stream()
+        checkCancelled();
+        return new LetterLayout(cleanedBlobs, blobGraph, letters);
+    }
+
+    /**
+     * Finds the words in a layout of letters from this or an identically configured solver.
+     */
+    WordsearchResult search(LetterLayout layout) {
+        Map<Blob, Character> letters = layout.letters;
+        List<List<Blob>> validWords = findValidWords(layout.blobGraph, letters);
+        checkCancelled();
+        return toResult(getCleanedValidWords(validWords), letters);
+    }
+
+    WordsearchResult toResult(List<List<Blob>> cleanedValidWords, Map<Blob, Character> letters) {
+        return new WordsearchResult(cleanedValidWords.stream()
                 .collect(Collectors.toMap(
                     word -> Joiner.on("").join(Lists.transform(word, letters::get)),
-                    word -> word.stream()
-                            .flatMap(b -> b.points.stream().flatMap(p -> Stream.of(p.x, p.y)))
-                            .collect(Collectors.toList()),
-                    (word1, word2) -> word1));
-    }
-
-    boolean[][] getDarkPixels() {
-        int[] rgbs = image.getRGB(0, 0, width, height, null, 0, width);
-        boolean[][] isDark = new boolean[width][height];
-        for (int x = 0; x < width; x++)
-            for (int y = 0; y < height; y++) {
-                Color color = new Color(rgbs[y * width + x]);
-                isDark[x][y] = color.getRed() + color.getGreen() + color.getBlue() < config.darkCutoff;
-                image.setRGB(x, y, (isDark[x][y] ? Color.BLACK : Color.WHITE).getRGB());
-            }
-        return isDark;
+                    word -> word,
+                    (word1, word2) -> word1,
+                    LinkedHashMap::new)));
     }
 
-    List<Blob> findBlobs(boolean[][] darkPixels) {
-        List<Blob> blobs = new ArrayList<>();
-        boolean[][] seen = new boolean[width][height];
-        for (int x = 0; x < width; x++)
-            for (int y = 0; y < height; y++)
-                if (darkPixels[x][y] && !seen[x][y]) {
-                    ArrayDeque<Point> q = new ArrayDeque<Point>();
-                    q.add(new Point(x, y));
-                    List<Point> points = new ArrayList<>();
-                    while (!q.isEmpty()) {
-                        Point p = q.pop();
-                        if (p.x >= 0 && p.x < width && p.y >= 0 && p.y < height && darkPixels[p.x][p.y] && !seen[p.x][p.y]) {
-                            seen[p.x][p.y] = true;
-                            points.add(p);
-                            for (int dx = -1; dx <= 1; dx++)
-                                for (int dy = -1; dy <= 1; dy++)
-                                    q.push(new Point(p.x + dx, p.y + dy));
-                        }
-                    }
-                    blobs.add(new Blob(points));
-                }
+    /**
+     * Finds the blobs of dark pixels, either in the whole image at once or, if config.stripHeight is set, one strip at
+     * a time, so that only one strip's bitmap is in memory. Both give the same blobs.
+     */
+    List<Blob> getBlobs() {
+        if (config.stripHeight <= 0) {
+            Bitmap darkPixels = getDarkPixels();
+            checkCancelled();
+            return findBlobs(darkPixels);
+        }
+        metrics.start();
+        BlobLabeler labeler = new BlobLabeler();
+        for (int minY = 0; minY < height; minY += config.stripHeight) {
+            checkCancelled();
+            Bitmap strip = Bitmap.ofDarkPixels(image, config.darkCutoff, minY, Math.min(config.stripHeight, height - minY));
+            if (!config.preserveImage)
+                strip.drawTo(image, minY);
+            labeler.addRows(strip, minY);
+        }
+        List<Blob> blobs = labeler.getBlobs();
+        metrics.stop(SolveMetrics.Stage.BLOBS);
+        metrics.count("blobs", blobs.size());
+        return blobs;
+    }
 
+    Bitmap getDarkPixels() {
+        metrics.start();
+        Bitmap darkPixels = Bitmap.ofDarkPixels(image, config.darkCutoff);
+        if (!config.preserveImage)
+            darkPixels.drawTo(image);
+        metrics.stop(SolveMetrics.Stage.DARK_PIXELS);
+        return darkPixels;
+    }
+
+    List<Blob> findBlobs(Bitmap darkPixels) {
+        metrics.start();
+        List<Blob> blobs = BlobLabeler.findBlobs(darkPixels);
+        metrics.stop(SolveMetrics.Stage.BLOBS);
+        metrics.count("blobs", blobs.size());
         return blobs;
     }
 
     List<Blob> getCleanedBlobs(List<Blob> blobs) {
-        Set<Blob> cleanedBlobs = new HashSet<>();
+        metrics.start();
+        int sep = config.minBlobSeparation;
+        Set<Blob> cleanedBlobs = new LinkedHashSet<>();
+        BlobGrid grid = new BlobGrid(width, height, BlobGrid.getCellSize(width, height, blobs.size()));
         Function<Blob, Optional<Blob>> findCloseBlob = blob -> {
-            for (Blob closeBlob : cleanedBlobs)
-                if (blob.minX < closeBlob.maxX + config.minBlobSeparation && closeBlob.minX < blob.maxX + config.minBlobSeparation
-                        && blob.minY < closeBlob.maxY + config.minBlobSeparation && closeBlob.minY < blob.maxY + config.minBlobSeparation) {
+            for (Blob closeBlob : grid.getCandidates(blob.minX - sep, blob.minY - sep, blob.maxX + sep, blob.maxY + sep))
+                if (blob.minX < closeBlob.maxX + sep && closeBlob.minX < blob.maxX + sep
+                        && blob.minY < closeBlob.maxY + sep && closeBlob.minY < blob.maxY + sep) {
                     return Optional.of(closeBlob);
                 }
             return Optional.empty();
         };
         for (Blob blob : blobs) {
+            checkCancelled();
             Optional<Blob> closeBlob;
             while ((closeBlob = findCloseBlob.apply(blob)).isPresent()) {
-                cleanedBlobs.remove(closeBlob.get());
-                blob = blob.merge(closeBlob.get());
+                Blob b = closeBlob.get();
+                grid.remove(b, b.minX, b.minY, b.maxX, b.maxY);
+                cleanedBlobs.remove(b);
+                blob = blob.merge(b);
             }
+            grid.add(blob, blob.minX, blob.minY, blob.maxX, blob.maxY);
             cleanedBlobs.add(blob);
         }
         double minBlobSize = config.minBlobSizeRelative * Math.max(width, height);
-        return cleanedBlobs.stream()
+        List<Blob> largeBlobs = cleanedBlobs.stream()
             .filter(blob -> blob.getWidth() > minBlobSize && blob.getHeight() > minBlobSize)
             .collect(Collectors.toList());
+        metrics.stop(SolveMetrics.Stage.CLEANED_BLOBS);
+        metrics.count("cleanedBlobs", largeBlobs.size());
+        return largeBlobs;
     }
 
     Multimap<Blob, Blob> getBlobGraph(List<Blob> blobs) {
-        Multimap<Blob, Blob> blobGraph = ArrayListMultimap.create();
+        metrics.start();
+        Map<Blob, Integer> indices = new IdentityHashMap<>();
+        BlobGrid grid = new BlobGrid(width, height, BlobGrid.getCellSize(width, height, blobs.size()));
         for (Blob blob : blobs) {
-            double minDist = blobs.stream()
-                    .filter(neighborBlob -> !blob.equals(neighborBlob))
-                    .mapToDouble(neighborBlob -> blob.center.distance(neighborBlob.center))
-                    .min()
-                    .getAsDouble();
-            blobs.stream()
+            indices.put(blob, indices.size());
+            grid.add(blob, blob.center.x, blob.center.y, blob.center.x, blob.center.y);
+        }
+        Multimap<Blob, Blob> blobGraph = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+        for (Blob blob : blobs) {
+            checkCancelled();
+            double minDist = grid.getNearestDistance(blob.center, blob);
+            if (Double.isInfinite(minDist))
+                continue;
+            double maxDist = minDist * config.maxBlobSeparationRatio;
+            int r = (int) Math.ceil(maxDist);
+            // Neighbors are listed in the same order as the blobs, as if all blobs were scanned
+            grid.getCandidates(blob.center.x - r, blob.center.y - r, blob.center.x + r, blob.center.y + r).stream()
                     .filter(neighborBlob -> !blob.equals(neighborBlob))
-                    .filter(neighborBlob -> blob.center.distance(neighborBlob.center) < minDist * config.maxBlobSeparationRatio)
-                    .forEach(neighborBlob -> blobGraph.put(blob, neighborBlob));
+                    .filter(neighborBlob -> blob.center.distance(neighborBlob.center) < maxDist)
+                    .mapToInt(indices::get)
+                    .sorted()
+                    .distinct()
+                    .forEach(index -> blobGraph.put(blob, blobs.get(index)));
         }
+        metrics.stop(SolveMetrics.Stage.BLOB_GRAPH);
+        metrics.count("graphEdges", blobGraph.size());
         return blobGraph;
     }
 
-    Map<Blob, Character> getLetters(List<Blob> blobs) throws TesseractException {
+    /**
+     * Recognizes the letter of each blob. Blobs whose glyph is in the glyph cache take the cached letter. The rest are
+     * clustered by glyph, each joining the nearest representative within the tolerance, and only the representatives
+     * are recognized: representatives of similar height are drawn side by side into batches, and the batches are
+     * recognized concurrently on the OCR engine pool.
+     */
+    Map<Blob, Character> getLetters(List<Blob> allBlobs) throws TesseractException {
+        metrics.start();
         int border = config.blobBorderForOCR;
+        OcrEnginePool ocrEnginePool = this.ocrEnginePool != null ? this.ocrEnginePool : OcrEnginePool.getDefault();
 
-        Tesseract ocr = Tesseract.getInstance();
-        ocr.setDatapath(config.datapathForOCR);
-        ocr.setPageSegMode(7);
-        ocr.setTessVariable("tessedit_char_whitelist", config.allowedCharsForOCR);
-        ocr.setTessVariable("load_system_dawg", "0");
-        ocr.setTessVariable("load_freq_dawg", "0");
-
+        OcrStats stats = new OcrStats();
         Map<Blob, Character> letters = new HashMap<>();
+        Map<Blob, Glyph> glyphs = new HashMap<>();
+        Map<Blob, Blob> representatives = new LinkedHashMap<>();
+        GlyphIndex<Blob> representativeIndex = new GlyphIndex<>(config.glyphTolerance);
+        List<Blob> blobs = new ArrayList<>();
+        for (Blob blob : allBlobs) {
+            Glyph glyph = Glyph.of(blob);
+            Character cachedLetter = glyphCache.get(glyph, config.datapathForOCR, config.allowedCharsForOCR);
+            if (cachedLetter != null) {
+                letters.put(blob, cachedLetter);
+                stats.numCacheHits++;
+                continue;
+            }
+            Blob representative = representativeIndex.findNearest(glyph);
+            if (representative != null) {
+                representatives.put(blob, representative);
+                stats.numClusterHits++;
+            } else {
+                glyphs.put(blob, glyph);
+                representativeIndex.add(glyph, blob);
+                blobs.add(blob);
+            }
+        }
+        stats.numBlobs += allBlobs.size();
+
+        Set<Blob> batched = new HashSet<>();
+        List<List<Blob>> batches = new ArrayList<>();
+        List<Future<OcrEnginePool.Result>> results = new ArrayList<>();
         for (Blob blob : blobs)
-            if (!letters.containsKey(blob)) {
+            if (!batched.contains(blob)) {
                 List<Blob> similarHeight = new ArrayList<>();
                 int totalWidth = 0, totalHeight = 0;
                 for (Blob similarBlob : blobs)
-                    if (!letters.containsKey(similarBlob) && Math.abs(blob.getHeight() - similarBlob.getHeight()) <= border) {
+                    if (!batched.contains(similarBlob) && Math.abs(blob.getHeight() - similarBlob.getHeight()) <= border) {
                         similarHeight.add(similarBlob);
                         totalWidth += similarBlob.getWidth() + 2 * border;
                         totalHeight = Math.max(totalHeight, similarBlob.getHeight() + 2 * border);
                         if (similarHeight.size() == config.maxBatchForOCR)
                             break;
                     }
-                BufferedImage buffer = new BufferedImage(totalWidth, totalHeight, BufferedImage.TYPE_INT_RGB);
-                Graphics g = buffer.getGraphics();
-                g.setColor(Color.WHITE);
-                g.fillRect(0, 0, totalWidth, totalHeight);
-                int x = 0;
-                for (Blob similarBlob : similarHeight) {
-                    BufferedImage letter =
-                            image.getSubimage(similarBlob.minX, similarBlob.minY, similarBlob.getWidth(), similarBlob.getHeight());
-                    g.drawImage(letter, x + border, border, null);
-                    x += similarBlob.getWidth() + 2 * border;
-                }
-                String text = "";
-                for (char c : ocr.doOCR(buffer).toCharArray())
-                    if (config.allowedCharsForOCR.contains(c + ""))
-                        text += c;
-                for (int i = 0; i < similarHeight.size(); i++)
-                    letters.put(similarHeight.get(i), i < text.length() ? text.charAt(i) : ' ');
+                batched.addAll(similarHeight);
+                batches.add(similarHeight);
+                results.add(ocrEnginePool.recognize(
+                    drawBatch(similarHeight, totalWidth, totalHeight), config.datapathForOCR, config.allowedCharsForOCR));
             }
 
+        // Letters are matched to glyphs by their position in the batch, so a batch where OCR dropped or merged a
+        // letter is recognized again one glyph at a time, rather than shifting every later letter into the glyph cache
+        int numBatches = batches.size();
+        for (int batch = 0; batch < batches.size(); batch++) {
+            String text = getText(results, batch, stats);
+            List<Blob> batchBlobs = batches.get(batch);
+            if (batchBlobs.size() > 1 && text.length() != batchBlobs.size()) {
+                for (Blob blob : batchBlobs) {
+                    batches.add(Collections.singletonList(blob));
+                    results.add(ocrEnginePool.recognize(drawBatch(batches.get(batches.size() - 1),
+                        blob.getWidth() + 2 * border, blob.getHeight() + 2 * border), config.datapathForOCR,
+                        config.allowedCharsForOCR));
+                }
+                stats.numRetriedBatches++;
+                continue;
+            }
+            for (int i = 0; i < batchBlobs.size(); i++) {
+                char letter = text.length() == batchBlobs.size() ? text.charAt(i) : ' ';
+                letters.put(batchBlobs.get(i), letter);
+                if (letter != ' ')
+                    glyphCache.put(glyphs.get(batchBlobs.get(i)), config.datapathForOCR, config.allowedCharsForOCR, letter);
+            }
+        }
+        representatives.forEach((blob, representative) -> letters.put(blob, letters.get(representative)));
+        ocrStats.add(stats);
+        metrics.stop(SolveMetrics.Stage.LETTERS);
+        metrics.count("ocrBatches", batches.size());
+        metrics.count("ocrRetriedBatches", batches.size() - numBatches);
         return letters;
     }
 
+    /**
+     * Draws the blobs side by side on a white image of the given size, each with blobBorderForOCR pixels around it.
+     */
+    private BufferedImage drawBatch(List<Blob> batch, int width, int height) {
+        int border = config.blobBorderForOCR;
+        BufferedImage buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = buffer.getGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        int x = 0;
+        for (Blob blob : batch) {
+            int[] runs = blob.runs;
+            for (int i = 0; i < runs.length; i += 3)
+                g.fillRect(x + border + runs[i + 1] - blob.minX, border + runs[i] - blob.minY,
+                    runs[i + 2] - runs[i + 1] + 1, 1);
+            x += blob.getWidth() + 2 * border;
+        }
+        return buffer;
+    }
+
+    /**
+     * Waits for the text of the given batch, keeping only the allowed characters. If it fails, the remaining
+     * batches are cancelled.
+     */
+    private String getText(List<Future<OcrEnginePool.Result>> results, int batch, OcrStats stats)
+            throws TesseractException {
+        OcrEnginePool.Result result;
+        try {
+            result = getResult(results.get(batch));
+        } catch (TesseractException | RuntimeException e) {
+            results.forEach(r -> r.cancel(true));
+            throw e;
+        }
+        stats.numBatches++;
+        stats.waitNanos += result.waitNanos;
+        stats.ocrNanos += result.ocrNanos;
+        StringBuilder text = new StringBuilder();
+        for (char c : result.text.toCharArray())
+            if (config.allowedCharsForOCR.indexOf(c) != -1)
+                text.append(c);
+        return text.toString();
+    }
+
+    private OcrEnginePool.Result getResult(Future<OcrEnginePool.Result> result) throws TesseractException {
+        try {
+            while (true)
+                try {
+                    return result.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    checkCancelled();
+                }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("OCR interrupted");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), TesseractException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Finds every path of blobs spelling a dictionary word. If the letters lie on a regular grid whose directions are
+     * too far apart for words to turn between them, only straight lines of the grid are searched, which finds the same
+     * paths; otherwise the blob graph is searched.
+     */
     List<List<Blob>> findValidWords(Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters) {
-        List<List<Blob>> validWords = new ArrayList<>();
-        for (Blob startBlob : blobGraph.keySet())
-            findWordsHelper(Lists.newArrayList(startBlob), blobGraph, letters, validWords);
+        metrics.start();
+        LongAdder numDfsNodes = new LongAdder();
+        LetterGrid grid = config.detectGrid ? LetterGrid.detect(blobGraph, letters, config.gridTolerance) : null;
+        List<List<Blob>> validWords;
+        if (grid != null && grid.minTurnAngle >= config.maxWordBendAngle) {
+            validWords = findValidWordsInGrid(grid, blobGraph, numDfsNodes);
+            metrics.count("gridCells", grid.numRows * grid.numCols);
+        } else if (config.parallelWordSearch) {
+            IndexedBlobGraph graph = new IndexedBlobGraph(blobGraph, letters);
+            validWords = findValidWordsInParallel(graph, numDfsNodes);
+        } else {
+            IndexedBlobGraph graph = new IndexedBlobGraph(blobGraph, letters);
+            validWords = new ArrayList<>();
+            for (int startBlob = 0; startBlob < graph.numStarts; startBlob++)
+                findWordsFrom(startBlob, graph, validWords, numDfsNodes);
+        }
+        metrics.stop(SolveMetrics.Stage.VALID_WORDS);
+        metrics.count("dfsNodes", numDfsNodes.sum());
+        metrics.count("candidateWords", validWords.size());
         return validWords;
     }
 
-    private void findWordsHelper(
-            List<Blob> word, Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters, List<List<Blob>> validWords) {
-        if (dictionary.contains(Joiner.on("").join(Lists.transform(word, letters::get))))
-            validWords.add(ImmutableList.copyOf(word));
-        Blob blob = word.get(word.size() - 1);
-        for (Blob neighborBlob : blobGraph.get(blob)) {
-            boolean good = word.size() == 1;
-            if (!good) {
-                double bendAngle =
-                        Math.abs(word.get(word.size() - 2).center.headingTo(blob.center) - blob.center.headingTo(neighborBlob.center));
-                if (bendAngle < config.maxWordBendAngle || bendAngle > 360 - config.maxWordBendAngle)
-                    good = true;
+    /**
+     * Scans from every cell of the grid with an edge in the blob graph in each of the eight directions, for as long as
+     * the letters spell a prefix of some dictionary word and the steps are graph edges within the bend limit, which
+     * takes time linear in the number of cells times the length of the longest word.
+     */
+    private List<List<Blob>> findValidWordsInGrid(LetterGrid grid, Multimap<Blob, Blob> blobGraph,
+            LongAdder numDfsNodes) {
+        List<List<Blob>> validWords = new ArrayList<>();
+        long numNodes = 0;
+        for (int row = 0; row < grid.numRows; row++)
+            for (int col = 0; col < grid.numCols; col++) {
+                checkCancelled();
+                if (grid.blobs[row][col] == null || !blobGraph.containsKey(grid.blobs[row][col]))
+                    continue;
+                int start = dictionary.child(Dictionary.ROOT, grid.letters[row][col]);
+                if (start == Dictionary.NONE)
+                    continue;
+                numNodes++;
+                if (dictionary.isWord(start))
+                    validWords.add(ImmutableList.of(grid.blobs[row][col]));
+                for (int direction = 0; direction < LetterGrid.DIRECTIONS.length; direction++) {
+                    int dRow = LetterGrid.DIRECTIONS[direction][0], dCol = LetterGrid.DIRECTIONS[direction][1];
+                    int node = start;
+                    double heading = Double.NaN;
+                    for (int r = row, c = col; !Double.isNaN(grid.headings[r][c][direction]); ) {
+                        double stepHeading = grid.headings[r][c][direction];
+                        r += dRow;
+                        c += dCol;
+                        node = dictionary.child(node, grid.letters[r][c]);
+                        if (node == Dictionary.NONE)
+                            break;
+                        if (!Double.isNaN(heading)) {
+                            double bendAngle = Math.abs(heading - stepHeading);
+                            if (bendAngle >= config.maxWordBendAngle && bendAngle <= 360 - config.maxWordBendAngle)
+                                break;
+                        }
+                        if (Double.isNaN(heading) || !config.straightWordsOnly)
+                            heading = stepHeading;
+                        numNodes++;
+                        if (dictionary.isWord(node)) {
+                            ImmutableList.Builder<Blob> validWord = ImmutableList.builder();
+                            for (int i = row, j = col; i != r + dRow || j != c + dCol; i += dRow, j += dCol)
+                                validWord.add(grid.blobs[i][j]);
+                            validWords.add(validWord.build());
+                        }
+                    }
+                }
             }
-            if (good) {
-                word.add(neighborBlob);
-                findWordsHelper(word, blobGraph, letters, validWords);
-                word.remove(word.size() - 1);
+        numDfsNodes.add(numNodes);
+        return validWords;
+    }
+
+    private List<List<Blob>> findValidWordsInParallel(IndexedBlobGraph graph, LongAdder numDfsNodes) {
+        // Each start blob is searched independently into its own list, and the lists are concatenated in start blob
+        // order, so the result is the same as the serial search regardless of scheduling.
+        List<Callable<List<List<Blob>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < graph.numStarts; i++) {
+            int startBlob = i;
+            tasks.add(() -> {
+                List<List<Blob>> validWords = new ArrayList<>();
+                findWordsFrom(startBlob, graph, validWords, numDfsNodes);
+                return validWords;
+            });
+        }
+        List<List<Blob>> validWords = new ArrayList<>();
+        try {
+            for (Future<List<List<Blob>>> future : executor.invokeAll(tasks))
+                validWords.addAll(future.get());
+        } catch (InterruptedException e) {
+            // Stop the tasks, which run on threads that are not interrupted with this one
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Word search interrupted");
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        return validWords;
+    }
+
+    private void findWordsFrom(
+            int startBlob, IndexedBlobGraph graph, List<List<Blob>> validWords, LongAdder numDfsNodes) {
+        int node = dictionary.child(Dictionary.ROOT, graph.letters[startBlob]);
+        if (node != Dictionary.NONE) {
+            int[] word = wordBuffer.get();
+            word[0] = startBlob;
+            int[] numNodes = new int[1];
+            wordBuffer.set(findWordsHelper(word, 1, node, Double.NaN, graph, validWords, numNodes));
+            numDfsNodes.add(numNodes[0]);
+        }
+    }
+
+    /**
+     * Extends the word whose first wordLength blobs are in the given buffer, where node is the dictionary node spelled
+     * by those blobs and heading is the direction the word is required to continue in (NaN if the word is a single
+     * blob). Only continues along neighbors whose letter keeps the word a prefix of some dictionary word, and counts
+     * the words visited in numNodes[0]. Returns the buffer, which is reallocated if the word outgrows it.
+     */
+    private int[] findWordsHelper(int[] word, int wordLength, int node, double heading, IndexedBlobGraph graph,
+            List<List<Blob>> validWords, int[] numNodes) {
+        checkCancelled();
+        numNodes[0]++;
+        if (dictionary.isWord(node)) {
+            ImmutableList.Builder<Blob> validWord = ImmutableList.builder();
+            for (int i = 0; i < wordLength; i++)
+                validWord.add(graph.blobs.get(word[i]));
+            validWords.add(validWord.build());
+        }
+        int blob = word[wordLength - 1];
+        int[] neighbors = graph.neighbors[blob];
+        double[] headings = graph.headings[blob];
+        for (int i = 0; i < neighbors.length; i++) {
+            int neighborBlob = neighbors[i];
+            int child = dictionary.child(node, graph.letters[neighborBlob]);
+            if (child == Dictionary.NONE)
+                continue;
+            if (wordLength > 1) {
+                double bendAngle = Math.abs(heading - headings[i]);
+                if (bendAngle >= config.maxWordBendAngle && bendAngle <= 360 - config.maxWordBendAngle)
+                    continue;
             }
+            if (wordLength == word.length)
+                word = Arrays.copyOf(word, 2 * word.length);
+            word[wordLength] = neighborBlob;
+            double nextHeading = wordLength > 1 && config.straightWordsOnly ? heading : headings[i];
+            word = findWordsHelper(word, wordLength + 1, child, nextHeading, graph, validWords, numNodes);
         }
+        return word;
+    }
+
+    private void checkCancelled() {
+        if (isCancelled())
+            throw new CancellationException("Search cancelled");
     }
 
+    /**
+     * Removes words that are too short, and words whose blobs are all part of some other word. To find the other
+     * words, indexes the words containing each blob; any word covering a given word must contain the given word's
+     * rarest blob, so only the few words containing that blob need to be checked.
+     */
     List<List<Blob>> getCleanedValidWords(List<List<Blob>> validWords) {
+        metrics.start();
+        Map<Blob, List<List<Blob>>> wordsByBlob = new HashMap<>();
+        for (List<Blob> word : validWords)
+            for (Blob blob : word) {
+                List<List<Blob>> words = wordsByBlob.computeIfAbsent(blob, b -> new ArrayList<>());
+                if (words.isEmpty() || words.get(words.size() - 1) != word)
+                    words.add(word);
+            }
+
         List<List<Blob>> cleanedValidWords = new ArrayList<>();
         for (List<Blob> word : validWords) {
+            if (word.size() < config.minWordLength)
+                continue;
+            List<List<Blob>> candidates = word.stream()
+                    .map(wordsByBlob::get)
+                    .min(Comparator.comparingInt(List::size))
+                    .get();
             Predicate<List<Blob>> isOuterWord = outerWord -> word.stream().allMatch(blob -> outerWord.contains(blob));
-            if (word.size() >= config.minWordLength && validWords.stream()
+            if (candidates.stream()
                     .filter(outerWord -> !word.equals(outerWord))
                     .allMatch(outerWord -> !isOuterWord.apply(outerWord)))
                 cleanedValidWords.add(word);
         }
+        metrics.stop(SolveMetrics.Stage.CLEANED_VALID_WORDS);
+        metrics.count("words", cleanedValidWords.size());
         return cleanedValidWords;
     }
 }
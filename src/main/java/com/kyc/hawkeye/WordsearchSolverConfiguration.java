@@ -1,8 +1,13 @@
 package com.kyc.hawkeye;
 
+import java.util.Arrays;
+import java.util.List;
+
 public final class WordsearchSolverConfiguration {
 
     public int darkCutoff = 256;
+    public int stripHeight = 0;
+    public boolean preserveImage = false;
     public int minBlobSeparation = 2;
     public double minBlobSizeRelative = 0.005;
     public double maxBlobSeparationRatio = 1.8;
@@ -10,7 +15,28 @@ public final class WordsearchSolverConfiguration {
     public String datapathForOCR = "/usr/local/share/tessdata";
     public String allowedCharsForOCR = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
     public int maxBatchForOCR = 50;
+    public int glyphTolerance = 8;
     public String dictionaryPath = "/usr/share/dict/words";
     public double maxWordBendAngle = 20;
     public int minWordLength = 3;
+    public boolean straightWordsOnly = false;
+    public boolean parallelWordSearch = false;
+    public boolean detectGrid = true;
+    public double gridTolerance = 0.3;
+    public boolean separateRegions = false;
+
+    /**
+     * Returns the fields that affect which letters are found in an image and where they are.
+     */
+    List<Object> getLayoutKey() {
+        return Arrays.asList(SolveStage.BLOBS.getKey(this), SolveStage.CLEANED_BLOBS.getKey(this),
+            SolveStage.BLOB_GRAPH.getKey(this), SolveStage.LETTERS.getKey(this));
+    }
+
+    /**
+     * Returns the fields that affect which words are found in a given layout of letters.
+     */
+    List<Object> getWordsKey() {
+        return Arrays.asList(SolveStage.VALID_WORDS.getKey(this), SolveStage.CLEANED_VALID_WORDS.getKey(this));
+    }
 }
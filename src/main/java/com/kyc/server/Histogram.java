@@ -0,0 +1,51 @@
+package com.kyc.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A thread-safe histogram with fixed bucket bounds growing geometrically, written in the Prometheus text format.
+ */
+final class Histogram {
+
+    private final double[] bounds;
+    private final AtomicLongArray counts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Creates a histogram whose buckets hold values up to first, first * factor, first * factor^2, and so on, for the
+     * given number of buckets, plus a final bucket for larger values.
+     */
+    Histogram(double first, double factor, int numBuckets) {
+        this.bounds = new double[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            bounds[i] = first * Math.pow(factor, i);
+        this.counts = new AtomicLongArray(numBuckets + 1);
+    }
+
+    void record(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket])
+            bucket++;
+        counts.incrementAndGet(bucket);
+        sum.add(value);
+    }
+
+    /**
+     * Appends the cumulative buckets, sum and count of the histogram under the given metric name and labels (such as
+     * "stage=\"blobs\"", or empty for none).
+     */
+    void write(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long count = 0;
+        for (int i = 0; i <= bounds.length; i++) {
+            count += counts.get(i);
+            String le = i < bounds.length ? String.valueOf(bounds[i]) : "+Inf";
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(le).append("\"} ")
+                .append(count).append('\n');
+        }
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffix).append(' ').append(sum.sum()).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(count).append('\n');
+    }
+}
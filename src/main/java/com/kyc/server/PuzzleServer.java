@@ -1,29 +1,65 @@
 package com.kyc.server;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import javax.imageio.ImageIO;
 import javax.xml.ws.Service;
 import javax.xml.ws.ServiceMode;
 import javax.xml.ws.WebServiceProvider;
 
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.RequestContext;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kyc.hawkeye.Dictionary;
+import com.kyc.hawkeye.GlyphCache;
+import com.kyc.hawkeye.OcrEnginePool;
+import com.kyc.hawkeye.SolveCache;
+import com.kyc.hawkeye.SolveMetrics;
+import com.kyc.hawkeye.WordsearchResult;
+import com.kyc.hawkeye.WordsearchSession;
 import com.kyc.hawkeye.WordsearchSolver;
 import com.kyc.hawkeye.WordsearchSolverConfiguration;
+import com.kyc.wikinet.WikinetIndex;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
@@ -33,17 +69,137 @@ import com.sun.net.httpserver.HttpServer;
 public class PuzzleServer {
 
     public static void main(String[] args) throws Exception {
-        HttpServer server = HttpServer.create(new InetSocketAddress(2915), 0);
+        WordsearchSolverConfiguration defaultConfig = new WordsearchSolverConfiguration();
+        defaultConfig.dictionaryPath = System.getProperty("dictionaryPath", defaultConfig.dictionaryPath);
+        Dictionary dictionary = Dictionary.get(defaultConfig.dictionaryPath, defaultConfig.allowedCharsForOCR);
+        System.out.println("Loaded " + dictionary.size() + " words from " + defaultConfig.dictionaryPath
+                + " (" + dictionary.getMemoryUsage() / 1024 + " KB)");
+        int ocrThreads = Integer.getInteger("ocrThreads", Runtime.getRuntime().availableProcessors());
+        OcrEnginePool ocrEnginePool = new OcrEnginePool(ocrThreads);
+        ocrEnginePool.warmUp(defaultConfig.datapathForOCR, defaultConfig.allowedCharsForOCR);
+        GlyphCache glyphCache = new GlyphCache(Long.getLong("glyphCacheSize", 100000));
+        SolveCache solveCache =
+                new SolveCache(Long.getLong("layoutCacheBytes", 256 << 20), Long.getLong("resultCacheBytes", 64 << 20));
+
+        // Solves run on a fixed pool with a bounded queue; submits beyond that are turned away instead of piling up
+        int solverThreads = Integer.getInteger("solverThreads", Runtime.getRuntime().availableProcessors());
+        int solverQueueSize = Integer.getInteger("solverQueueSize", 2 * solverThreads);
+        ExecutorService solverExecutor = new ThreadPoolExecutor(solverThreads, solverThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(solverQueueSize), new ThreadFactoryBuilder().setNameFormat("solver-%d").build());
+        long solveTimeoutSeconds = Long.getLong("solveTimeoutSeconds", 120);
+        long maxUploadBytes = Long.getLong("maxUploadBytes", 32 << 20);
+        // Uploads are only parsed and decoded by as many requests as can be solving or queued at once
+        int maxConcurrentUploads = Integer.getInteger("maxConcurrentUploads", solverThreads + solverQueueSize);
+        // Decode uploaded images straight from the request body rather than through a temporary file
+        ImageIO.setUseCache(false);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(2915), Integer.getInteger("backlog", 64));
+        server.setExecutor(Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("http-%d").build()));
         server.createContext("/hawkeye", new HawkeyeHandler());
-        server.createContext("/hawkeye/submit", new HawkeyeSubmitHandler());
+        MetricsHandler metricsHandler = new MetricsHandler();
+        server.createContext("/metrics", metricsHandler);
+        HawkeyeSubmitHandler submitHandler = new HawkeyeSubmitHandler(defaultConfig.dictionaryPath, ocrEnginePool,
+                glyphCache, solveCache, Long.getLong("sessionCacheBytes", 512 << 20), solverExecutor,
+                solveTimeoutSeconds, maxUploadBytes, maxConcurrentUploads, metricsHandler);
+        server.createContext("/hawkeye/submit", submitHandler);
+        server.createContext("/hawkeye/session", submitHandler);
+        server.createContext("/hawkeye/resolve", submitHandler);
+        String wikinetIndex = System.getProperty("wikinetIndex");
+        if (wikinetIndex != null) {
+            WikinetIndex index = WikinetIndex.open(Paths.get(wikinetIndex));
+            System.out.println("Opened wikinet index of " + index.size() + " titles from " + wikinetIndex);
+            server.createContext("/wikinet", new WikinetHandler(index));
+        }
         server.start();
         System.out.println("Puzzle server running at " + server.getAddress());
     }
 
+    /**
+     * Returns the query parameter with the given name, URL-decoded, or null if there is none.
+     */
+    private static String getQueryParameter(HttpExchange t, String name) throws IOException {
+        String query = t.getRequestURI().getRawQuery();
+        if (query != null)
+            for (String param : query.split("&"))
+                if (param.startsWith(name + "="))
+                    return URLDecoder.decode(param.substring(name.length() + 1), "UTF-8");
+        return null;
+    }
+
+    private static void sendError(HttpExchange t, int code, String message) throws IOException {
+        byte[] response = message.getBytes();
+        t.sendResponseHeaders(code, response.length);
+        OutputStream os = t.getResponseBody();
+        os.write(response);
+        os.close();
+    }
+
     static class HawkeyeHandler implements HttpHandler {
+
+        private final byte[] response;
+
+        HawkeyeHandler() throws IOException {
+            try (InputStream in = ClassLoader.getSystemResource("hawkeye.html").openStream()) {
+                response = ByteStreams.toByteArray(in);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            t.getResponseHeaders().add("Content-type", "text/html");
+            t.sendResponseHeaders(200, response.length);
+            OutputStream os = t.getResponseBody();
+            os.write(response);
+            os.close();
+        }
+    }
+
+    /**
+     * Serves histograms of the metrics of every solve, per stage for the stages that ran, in the Prometheus text
+     * format.
+     */
+    static class MetricsHandler implements HttpHandler {
+
+        private final Map<SolveMetrics.Stage, Histogram> stageSeconds = new EnumMap<>(SolveMetrics.Stage.class);
+        private final Map<SolveMetrics.Stage, Histogram> stageAllocatedBytes = new EnumMap<>(SolveMetrics.Stage.class);
+        private final Map<String, Histogram> counts = new ConcurrentHashMap<>();
+        private final Histogram solveSeconds = new Histogram(0.001, 2, 18);
+
+        MetricsHandler() {
+            for (SolveMetrics.Stage stage : SolveMetrics.Stage.values()) {
+                stageSeconds.put(stage, new Histogram(0.001, 2, 18));
+                stageAllocatedBytes.put(stage, new Histogram(1 << 10, 4, 12));
+            }
+        }
+
+        void record(SolveMetrics metrics, long solveNanos) {
+            solveSeconds.record(solveNanos / 1e9);
+            metrics.getStages().forEach((stage, stageMetrics) -> {
+                stageSeconds.get(stage).record(stageMetrics.wallNanos / 1e9);
+                if (stageMetrics.allocatedBytes != -1)
+                    stageAllocatedBytes.get(stage).record(stageMetrics.allocatedBytes);
+            });
+            metrics.getCounts().forEach(
+                (name, value) -> counts.computeIfAbsent(name, k -> new Histogram(1, 4, 12)).record(value));
+        }
+
         @Override
         public void handle(HttpExchange t) throws IOException {
-            byte[] response = ByteStreams.toByteArray(ClassLoader.getSystemResource("hawkeye.html").openStream());
+            StringBuilder out = new StringBuilder();
+            out.append("# TYPE hawkeye_solve_seconds histogram\n");
+            solveSeconds.write(out, "hawkeye_solve_seconds", "");
+            out.append("# TYPE hawkeye_stage_seconds histogram\n");
+            stageSeconds.forEach((stage, histogram) ->
+                histogram.write(out, "hawkeye_stage_seconds", "stage=\"" + stage.name().toLowerCase() + "\""));
+            out.append("# TYPE hawkeye_stage_allocated_bytes histogram\n");
+            stageAllocatedBytes.forEach((stage, histogram) ->
+                histogram.write(out, "hawkeye_stage_allocated_bytes", "stage=\"" + stage.name().toLowerCase() + "\""));
+            out.append("# TYPE hawkeye_count histogram\n");
+            new TreeMap<>(counts).forEach((name, histogram) ->
+                histogram.write(out, "hawkeye_count", "name=\"" + name + "\""));
+
+            byte[] response = out.toString().getBytes(StandardCharsets.UTF_8);
+            t.getResponseHeaders().add("Content-type", "text/plain; version=0.0.4");
             t.sendResponseHeaders(200, response.length);
             OutputStream os = t.getResponseBody();
             os.write(response);
@@ -51,69 +207,411 @@ public class PuzzleServer {
         }
     }
 
+    /**
+     * Looks up Wikipedia titles in the wikinet index. With title=X, returns the summaries and redirects of the title;
+     * with prefix=X, the titles starting with X; and with pattern=X, the titles matching X, where '?' stands for any
+     * letter. Lists of titles are limited to the limit parameter, 100 by default.
+     */
+    static class WikinetHandler implements HttpHandler {
+
+        private static final int DEFAULT_LIMIT = 100;
+        private static final int MAX_LIMIT = 1000;
+
+        private final WikinetIndex index;
+
+        WikinetHandler(WikinetIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            String title = getQueryParameter(t, "title");
+            String prefix = getQueryParameter(t, "prefix");
+            String pattern = getQueryParameter(t, "pattern");
+            String limitParameter = getQueryParameter(t, "limit");
+            int limit = DEFAULT_LIMIT;
+            if (limitParameter != null) {
+                try {
+                    limit = Math.max(1, Math.min(Integer.parseInt(limitParameter), MAX_LIMIT));
+                } catch (NumberFormatException e) {
+                    sendError(t, 400, "Expected an integer limit.");
+                    return;
+                }
+            }
+
+            if (title == null && prefix == null && pattern == null) {
+                sendError(t, 400, "Expected a title, prefix or pattern parameter.");
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            String json;
+            if (title != null)
+                json = "{\"title\": " + toJson(WikinetIndex.normalize(title)) + ", \"summaries\": "
+                        + toJson(index.getSummaries(title)) + ", \"redirects\": " + toJson(index.getRedirects(title)) + "}";
+            else if (prefix != null)
+                json = toJson(index.findPrefix(prefix, limit));
+            else
+                json = toJson(index.findPattern(pattern, limit));
+
+            byte[] response = json.getBytes(StandardCharsets.UTF_8);
+            t.getResponseHeaders().add("Content-type", "application/json");
+            t.getResponseHeaders().add("X-Lookup-Micros", String.valueOf((System.nanoTime() - startTime) / 1000));
+            t.sendResponseHeaders(200, response.length);
+            OutputStream os = t.getResponseBody();
+            os.write(response);
+            os.close();
+        }
+
+        private static String toJson(List<String> strings) {
+            return strings.stream().map(WikinetHandler::toJson).collect(Collectors.joining(", ", "[", "]"));
+        }
+
+        private static String toJson(String s) {
+            StringBuilder json = new StringBuilder("\"");
+            for (char c : s.toCharArray()) {
+                if (c == '"' || c == '\\')
+                    json.append('\\').append(c);
+                else if (c < ' ')
+                    json.append(String.format("\\u%04x", (int) c));
+                else
+                    json.append(c);
+            }
+            return json.append('"').toString();
+        }
+    }
+
     static class HawkeyeSubmitHandler implements HttpHandler {
+
+        private static final int RETRY_AFTER_SECONDS = 10;
+        private static final int SESSION_TIMEOUT_MINUTES = 30;
+        private static final String SESSION_HEADER = "X-Hawkeye-Session";
+        private static final String METRICS_HEADER = "X-Hawkeye-Metrics";
+
+        private final Cache<String, WordsearchSession> sessions;
+        private final String dictionaryPath;
+        private final OcrEnginePool ocrEnginePool;
+        private final GlyphCache glyphCache;
+        private final SolveCache solveCache;
+        private final ExecutorService solverExecutor;
+        private final long solveTimeoutSeconds;
+        private final long maxUploadBytes;
+        private final Semaphore uploadPermits;
+        private final MetricsHandler metricsHandler;
+
+        HawkeyeSubmitHandler(String dictionaryPath, OcrEnginePool ocrEnginePool, GlyphCache glyphCache,
+                SolveCache solveCache, long maxSessionBytes, ExecutorService solverExecutor, long solveTimeoutSeconds,
+                long maxUploadBytes, int maxConcurrentUploads, MetricsHandler metricsHandler) {
+            // Sessions are weighed when put, so they are put again after each search to account for the stages kept
+            this.sessions = CacheBuilder.newBuilder()
+                    .maximumWeight(maxSessionBytes)
+                    .<String, WordsearchSession> weigher((id, session) -> Ints.saturatedCast(session.getMemoryUsage()))
+                    .expireAfterAccess(SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                    .build();
+            this.dictionaryPath = dictionaryPath;
+            this.ocrEnginePool = ocrEnginePool;
+            this.glyphCache = glyphCache;
+            this.solveCache = solveCache;
+            this.solverExecutor = solverExecutor;
+            this.solveTimeoutSeconds = solveTimeoutSeconds;
+            this.maxUploadBytes = maxUploadBytes;
+            this.uploadPermits = new Semaphore(maxConcurrentUploads);
+            this.metricsHandler = metricsHandler;
+        }
+
         @Override
         public void handle(final HttpExchange t) throws IOException {
+            // Requests hold a permit from before the upload is parsed until the result is sent, so an overloaded
+            // server turns requests away before decoding their images rather than only before solving them
+            if (!uploadPermits.tryAcquire()) {
+                sendUnavailable(t, "Too many puzzles are being solved, try again later.");
+                return;
+            }
             try {
-                List<FileItem> fileItems = new ServletFileUpload(new DiskFileItemFactory()).parseRequest(new RequestContext() {
-                    @Override
-                    public String getCharacterEncoding() {
-                        return "UTF-8";
-                    }
-                    @Override
-                    public int getContentLength() {
-                        return 0;
-                    }
-                    @Override
-                    public String getContentType() {
-                        return t.getRequestHeaders().getFirst("Content-type");
-                    }
-                    @Override
-                    public InputStream getInputStream() throws IOException {
-                        return t.getRequestBody();
+                long contentLength;
+                try {
+                    contentLength = getContentLength(t);
+                } catch (NumberFormatException e) {
+                    sendError(t, 400, "Invalid Content-Length header.");
+                    return;
+                }
+                if (contentLength > maxUploadBytes) {
+                    sendError(t, 413, "Uploads are limited to " + maxUploadBytes + " bytes.");
+                    return;
+                }
+                // The format of the result is checked up front, so that a bad one does not waste a solve
+                String format = getQueryParameter(t, "format");
+                if (format == null)
+                    format = "points";
+                WordsearchResult.Encoding encoding = null;
+                if (!format.equals("binary")) {
+                    try {
+                        encoding = WordsearchResult.Encoding.valueOf(format.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        sendError(t, 400, "Unknown format " + format + ".");
+                        return;
                     }
-                });
+                }
                 BufferedImage image = null;
+                String sessionId = null;
                 WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
-                for (FileItem fileItem : fileItems) {
-                    String field = fileItem.getFieldName();
-                    if (field.equals("image"))
-                        image = ImageIO.read(fileItem.getInputStream());
-                    else if (field.equals("dark-cutoff"))
-                        config.darkCutoff = Integer.parseInt(fileItem.getString());
-                    else if (field.equals("min-blob-separation"))
-                        config.minBlobSeparation = Integer.parseInt(fileItem.getString());
-                    else if (field.equals("min-blob-size-relative"))
-                        config.minBlobSizeRelative = Double.parseDouble(fileItem.getString());
-                    else if (field.equals("max-blob-separation-ratio"))
-                        config.maxBlobSeparationRatio = Double.parseDouble(fileItem.getString());
-                    else if (field.equals("blob-border-for-OCR"))
-                        config.blobBorderForOCR = Integer.parseInt(fileItem.getString());
-                    else if (field.equals("allowed-chars-for-OCR"))
-                        config.allowedCharsForOCR = fileItem.getString();
-                    else if (field.equals("max-batch-for-OCR"))
-                        config.maxBatchForOCR = Integer.parseInt(fileItem.getString());
-                    else if (field.equals("max-word-bend-angle"))
-                        config.maxWordBendAngle = Double.parseDouble(fileItem.getString());
-                    else if (field.equals("min-word-length"))
-                        config.minWordLength = Integer.parseInt(fileItem.getString());
+                config.dictionaryPath = dictionaryPath;
+                config.preserveImage = true;
+                try {
+                    ServletFileUpload upload = new ServletFileUpload();
+                    upload.setSizeMax(maxUploadBytes);
+                    FileItemIterator items = upload.getItemIterator(new UploadContext() {
+                        @Override
+                        public String getCharacterEncoding() {
+                            return "UTF-8";
+                        }
+                        @Override
+                        public long contentLength() {
+                            return contentLength;
+                        }
+                        @Override
+                        @Deprecated
+                        public int getContentLength() {
+                            return (int) Math.min(contentLength, Integer.MAX_VALUE);
+                        }
+                        @Override
+                        public String getContentType() {
+                            return t.getRequestHeaders().getFirst("Content-type");
+                        }
+                        @Override
+                        public InputStream getInputStream() throws IOException {
+                            return t.getRequestBody();
+                        }
+                    });
+                    while (items.hasNext()) {
+                        FileItemStream item = items.next();
+                        try (InputStream in = item.openStream()) {
+                            if (item.getFieldName().equals("image"))
+                                image = ImageIO.read(in);
+                            else if (item.getFieldName().equals("session"))
+                                sessionId = Streams.asString(in, "UTF-8");
+                            else
+                                try {
+                                    setConfigField(config, item.getFieldName(), Streams.asString(in, "UTF-8"));
+                                } catch (NumberFormatException e) {
+                                    sendError(t, 400, "Invalid value for " + item.getFieldName() + ".");
+                                    return;
+                                }
+                        }
+                    }
+                } catch (FileUploadException | IOException e) {
+                    // Uploads without a declared length only exceed the limit part way through, where the limit is
+                    // raised from the iterator, or from the item stream wrapped in a FileUploadIOException, possibly
+                    // wrapped again by the image reader
+                    if (!Throwables.getCausalChain(e).stream()
+                            .anyMatch(c -> c instanceof FileUploadBase.SizeLimitExceededException
+                                    || c instanceof FileUploadBase.FileSizeLimitExceededException))
+                        throw e;
+                    sendError(t, 413, "Uploads are limited to " + maxUploadBytes + " bytes.");
+                    return;
                 }
-                Map<String, List<Integer>> search;
+
+                // Submits solve through the result cache. Starting a session keeps the output of every stage, and
+                // resolving a session reruns only the stages affected by the changed configuration.
+                WordsearchSession session = null;
+                if (t.getHttpContext().getPath().equals("/hawkeye/resolve")) {
+                    session = sessionId == null ? null : sessions.getIfPresent(sessionId);
+                    if (session == null) {
+                        sendError(t, 404, "Unknown or expired session.");
+                        return;
+                    }
+                    image = session.getImage();
+                } else if (t.getHttpContext().getPath().equals("/hawkeye/session") && image != null) {
+                    session = new WordsearchSession(image);
+                    sessionId = UUID.randomUUID().toString();
+                    sessions.put(sessionId, session);
+                    t.getResponseHeaders().add(SESSION_HEADER, sessionId);
+                }
+                // With separateRegions, each region of the image is solved on its own, bypassing the caches
+                List<WordsearchResult> results;
                 if (image == null) {
-                    search = ImmutableMap.of();
+                    results = config.separateRegions ? Collections.emptyList()
+                            : Collections.singletonList(WordsearchResult.EMPTY);
                 } else {
-                    search = new WordsearchSolver(image, config).search();
+                    WordsearchSolver solver = new WordsearchSolver(image, config);
+                    solver.setOcrEnginePool(ocrEnginePool);
+                    solver.setGlyphCache(glyphCache);
+                    WordsearchSession finalSession = session;
+                    Future<List<WordsearchResult>> future;
+                    long startTime = System.nanoTime();
+                    try {
+                        future = solverExecutor.submit(() -> config.separateRegions ? solver.solveRegions()
+                                : Collections.singletonList(
+                                    finalSession == null ? solveCache.search(solver) : finalSession.search(solver)));
+                    } catch (RejectedExecutionException e) {
+                        sendUnavailable(t, "Too many puzzles are being solved, try again later.");
+                        return;
+                    }
+                    try {
+                        results = future.get(solveTimeoutSeconds, TimeUnit.SECONDS);
+                    } catch (TimeoutException e) {
+                        solver.cancel();
+                        future.cancel(true);
+                        sendError(t, 504, "Solving took longer than " + solveTimeoutSeconds + " seconds.");
+                        return;
+                    }
+                    long solveNanos = System.nanoTime() - startTime;
+                    if (session != null)
+                        sessions.put(sessionId, session);
+                    SolveMetrics metrics = solver.getMetrics();
+                    metricsHandler.record(metrics, solveNanos);
+                    if ("true".equals(getQueryParameter(t, "metrics")))
+                        t.getResponseHeaders().add(METRICS_HEADER, metrics.toJson());
+                    String description = image.getWidth() + "x" + image.getHeight() + " image in "
+                            + solveNanos / 1000000 + " ms";
+                    if (config.separateRegions)
+                        System.out.println("Solved " + results.size() + " regions of " + description + ": "
+                                + solver.getOcrStats() + "; " + metrics);
+                    else if (session == null)
+                        System.out.println("Solved " + description + ": " + solver.getOcrStats() + "; " + metrics
+                                + "; layout cache " + solveCache.getLayoutStats() + "; result cache "
+                                + solveCache.getResultStats());
+                    else
+                        System.out.println("Solved " + description + " in session " + sessionId + ", reran "
+                                + session.getLastRunStages() + ": " + solver.getOcrStats() + "; " + metrics);
                 }
-                t.getResponseHeaders().add("Content-type", "application/json");
-                t.sendResponseHeaders(200, 0);
-                OutputStream os = t.getResponseBody();
-                String json = "{" + Joiner.on(", ").withKeyValueSeparator(": ").join(search.entrySet().stream()
-                        .collect(Collectors.toMap(entry -> "\"" + entry.getKey() + "\"", entry -> entry.getValue()))) + "}";
-                os.write(json.getBytes());
-                os.close();
+                sendResult(t, results, config.separateRegions, encoding);
             } catch (Exception e) {
                 e.printStackTrace();
+                // Tell the client unless the response is already under way
+                if (t.getResponseCode() == -1)
+                    sendError(t, 500, "Failed to solve the puzzle: " + e);
+                else
+                    t.close();
+            } finally {
+                uploadPermits.release();
+            }
+        }
+
+        /**
+         * Returns the number of requests that can start before requests are turned away. A request's permit is only
+         * released after its response has been sent.
+         */
+        int getAvailableUploadPermits() {
+            return uploadPermits.availablePermits();
+        }
+
+        /**
+         * Streams the result to the client in the encoding named by the "format" query parameter: JSON with the points
+         * of each word (the default), JSON with the bounding box or pixel runs of each letter ("boxes" or "runs"), or
+         * the packed binary format of {@link WordsearchResult#writeBinary} ("binary"), for which the encoding is null.
+         * The response is gzipped if the client accepts it. The results of separate regions are sent as a JSON array,
+         * or in binary as the number of regions (an int) followed by each result.
+         */
+        private void sendResult(HttpExchange t, List<WordsearchResult> results, boolean separateRegions,
+                WordsearchResult.Encoding encoding) throws IOException {
+            boolean binary = encoding == null;
+            boolean gzip = acceptsGzip(t.getRequestHeaders().getFirst("Accept-encoding"));
+
+            t.getResponseHeaders().add("Content-type", binary ? "application/octet-stream" : "application/json");
+            if (gzip)
+                t.getResponseHeaders().add("Content-encoding", "gzip");
+            t.sendResponseHeaders(200, 0);
+            try (OutputStream os = gzip ? new GZIPOutputStream(t.getResponseBody(), 1 << 16)
+                    : new BufferedOutputStream(t.getResponseBody(), 1 << 16)) {
+                Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+                if (separateRegions) {
+                    if (binary)
+                        new DataOutputStream(os).writeInt(results.size());
+                    else
+                        out.write('[');
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    if (binary) {
+                        results.get(i).writeBinary(os);
+                    } else {
+                        if (i > 0)
+                            out.write(", ");
+                        results.get(i).writeJson(out, encoding);
+                    }
+                }
+                if (separateRegions && !binary)
+                    out.write(']');
+                out.flush();
+            }
+        }
+
+        /**
+         * Returns whether the Accept-Encoding header accepts gzip, either by name or through "*", with a nonzero
+         * quality value.
+         */
+        static boolean acceptsGzip(String acceptEncoding) {
+            if (acceptEncoding == null)
+                return false;
+            Double gzipQuality = null, anyQuality = null;
+            for (String coding : acceptEncoding.split(",")) {
+                String[] params = coding.split(";");
+                double quality = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q="))
+                        try {
+                            quality = Double.parseDouble(param.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                }
+                String name = params[0].trim().toLowerCase();
+                if (name.equals("gzip") || name.equals("x-gzip"))
+                    gzipQuality = quality;
+                else if (name.equals("*"))
+                    anyQuality = quality;
             }
+            Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+            return quality != null && quality > 0;
+        }
+
+        /**
+         * Sets the configuration field for the given form field. Unknown fields are ignored.
+         */
+        static void setConfigField(WordsearchSolverConfiguration config, String field, String value) {
+            if (field.equals("dark-cutoff"))
+                config.darkCutoff = Integer.parseInt(value);
+            else if (field.equals("strip-height"))
+                config.stripHeight = Integer.parseInt(value);
+            else if (field.equals("min-blob-separation"))
+                config.minBlobSeparation = Integer.parseInt(value);
+            else if (field.equals("min-blob-size-relative"))
+                config.minBlobSizeRelative = Double.parseDouble(value);
+            else if (field.equals("max-blob-separation-ratio"))
+                config.maxBlobSeparationRatio = Double.parseDouble(value);
+            else if (field.equals("blob-border-for-OCR"))
+                config.blobBorderForOCR = Integer.parseInt(value);
+            else if (field.equals("allowed-chars-for-OCR"))
+                config.allowedCharsForOCR = value;
+            else if (field.equals("max-batch-for-OCR"))
+                config.maxBatchForOCR = Integer.parseInt(value);
+            else if (field.equals("glyph-tolerance"))
+                config.glyphTolerance = Integer.parseInt(value);
+            else if (field.equals("max-word-bend-angle"))
+                config.maxWordBendAngle = Double.parseDouble(value);
+            else if (field.equals("min-word-length"))
+                config.minWordLength = Integer.parseInt(value);
+            else if (field.equals("straight-words-only"))
+                config.straightWordsOnly = Boolean.parseBoolean(value);
+            else if (field.equals("parallel-word-search"))
+                config.parallelWordSearch = Boolean.parseBoolean(value);
+            else if (field.equals("detect-grid"))
+                config.detectGrid = Boolean.parseBoolean(value);
+            else if (field.equals("grid-tolerance"))
+                config.gridTolerance = Double.parseDouble(value);
+            else if (field.equals("separate-regions"))
+                config.separateRegions = Boolean.parseBoolean(value);
+        }
+
+        private static long getContentLength(HttpExchange t) {
+            String contentLength = t.getRequestHeaders().getFirst("Content-length");
+            return contentLength == null ? -1 : Long.parseLong(contentLength);
+        }
+
+        private void sendUnavailable(HttpExchange t, String message) throws IOException {
+            t.getResponseHeaders().add("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            sendError(t, 503, message);
         }
     }
 }
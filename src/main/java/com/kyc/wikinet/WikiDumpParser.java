@@ -0,0 +1,303 @@
+package com.kyc.wikinet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams the pages of a Wikipedia XML dump, extracting the summary of each article or the targets of each redirect
+ * or disambiguation page, the same way as create_net.py. Only the current page is held in memory.
+ */
+final class WikiDumpParser {
+
+    interface Handler {
+
+        void summary(String title, String summary) throws IOException;
+
+        void redirects(String title, List<String> redirects) throws IOException;
+    }
+
+    private static final List<String> TAGS_TO_IGNORE_WIKI_MARKS = Arrays.asList("math", "ce");
+    private static final List<String> TAGS_TO_CLEAN = Arrays.asList("curly", "pipe", "ref", "math", "div");
+    private static final String[][] WIKI_MARKS_TO_HTML_TAG = { { "{{", "<curly>" }, { "}}", "</curly>" },
+            { "[[", "<square>" }, { "]]", "</square>" }, { "{|", "<pipe>" }, { "|}", "</pipe>" } };
+    private static final int MIN_SUMMARY_LENGTH = 100;
+
+    private WikiDumpParser() {}
+
+    /**
+     * Parses the dump, calling the handler for every page with a title and text, and returns the number of pages.
+     */
+    static int parse(InputStream in, Handler handler) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try {
+            // Dumps are far larger than the JDK's default limit on the total size of entities in a document
+            factory.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", 0);
+        } catch (IllegalArgumentException e) {
+            // Not the JDK's parser, which has no such limit
+        }
+        int numPages = 0;
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            String title = "";
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+                if (reader.getLocalName().equals("title")) {
+                    title = clean(reader.getElementText());
+                } else if (reader.getLocalName().equals("text") && !title.isEmpty()) {
+                    String text = clean(reader.getElementText());
+                    if (isRedirectPage(text))
+                        handler.redirects(title, getRedirects(text));
+                    else
+                        handler.summary(title, getSummary(text));
+                    numPages++;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return numPages;
+    }
+
+    /**
+     * Replaces runs of non-ASCII characters with a space and removes double quotes, as create_net.py does before
+     * parsing.
+     */
+    static String clean(String text) {
+        StringBuilder cleaned = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c > 0x7f) {
+                if (i == 0 || text.charAt(i - 1) <= 0x7f)
+                    cleaned.append(' ');
+            } else if (c != '"') {
+                cleaned.append(c);
+            }
+        }
+        return cleaned.toString();
+    }
+
+    static boolean isRedirectPage(String text) {
+        String lower = text.toLowerCase();
+        return lower.startsWith("#redirect") || lower.contains("{{disambiguation");
+    }
+
+    /**
+     * Returns the targets of all links in the text.
+     */
+    static List<String> getRedirects(String text) {
+        List<String> redirects = new ArrayList<>();
+        for (int index = text.indexOf("[["); index != -1; index = text.indexOf("[[", index + 1)) {
+            int end = text.indexOf("]]", index);
+            String link = text.substring(index + 2, Math.max(index + 2, end == -1 ? text.length() - 1 : end));
+            int pipe = link.indexOf('|');
+            redirects.add(pipe == -1 ? link : link.substring(0, pipe));
+        }
+        return redirects;
+    }
+
+    /**
+     * Returns the first paragraph of text of the article, skipping templates, tables, references, math, leading links
+     * and indented lines, and continuing to the next lines while it is shorter than MIN_SUMMARY_LENGTH.
+     */
+    static String getSummary(String text) {
+        for (String[] markAndTag : WIKI_MARKS_TO_HTML_TAG)
+            text = text.replace(markAndTag[0], markAndTag[1]);
+        SummaryParser parser = new SummaryParser();
+        for (String line : text.split("\n", -1)) {
+            parser.feed(line);
+            if (!parser.data.isEmpty()) {
+                if (parser.length() < MIN_SUMMARY_LENGTH) {
+                    parser.data.add(" ");
+                    continue;
+                }
+                // Wikitext prefixes intro lines with ':', e.g. ': blah redirects here'; ignore.
+                if (parser.data.get(0).charAt(0) == ':') {
+                    parser.data.clear();
+                    continue;
+                }
+                break;
+            }
+        }
+        return String.join("", parser.data);
+    }
+
+    /**
+     * The tag handling of the SummaryParser in create_net.py, over a minimal tokenizer that splits data at the same
+     * places as HTMLParser. A tag or reference left incomplete at the end of a line is completed by the next line.
+     */
+    private static final class SummaryParser {
+
+        final List<String> tags = new ArrayList<>();
+        final List<String> data = new ArrayList<>();
+        private String pending = "";
+
+        void feed(String line) {
+            String s = pending + line;
+            pending = "";
+            int i = 0, dataStart = 0;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                if (c != '<' && c != '&') {
+                    i++;
+                    continue;
+                }
+                handleData(s.substring(dataStart, i));
+                int end = c == '&' ? skipReference(s, i) : skipTag(s, i);
+                if (end == -1 && s.startsWith("&#", i) && s.indexOf(';', i) != -1) {
+                    // HTMLParser gives up on a malformed character reference once it sees a ';', passing the "&#"
+                    // as data and leaving the rest of the line for the next feed
+                    handleData("&#");
+                    pending = s.substring(i + 2);
+                    return;
+                }
+                if (end == -1) {
+                    pending = s.substring(i);
+                    return;
+                }
+                if (end == i) {
+                    // A '<' or '&' that starts nothing is data of its own
+                    handleData(s.substring(i, i + 1));
+                    end = i + 1;
+                }
+                i = dataStart = end;
+            }
+            handleData(s.substring(dataStart));
+        }
+
+        /**
+         * Handles the tag starting at the '<', returning its end, the index of the '<' if it starts nothing, or -1 if
+         * it is incomplete. Comments, declarations and end tags without a name are skipped.
+         */
+        private int skipTag(String s, int i) {
+            if (i + 1 == s.length())
+                return -1;
+            if (s.startsWith("<!--", i)) {
+                int end = s.indexOf("-->", i + 4);
+                return end == -1 ? -1 : end + 3;
+            }
+            char next = s.charAt(i + 1);
+            int end;
+            if (isLetter(next))
+                end = findStartTagEnd(s, i + 2);
+            else if (next == '/' || next == '!' || next == '?')
+                end = s.indexOf('>', i + 2);
+            else
+                return i;
+            if (end == -1)
+                return -1;
+            if (isLetter(next) || next == '/' && isLetter(s.charAt(i + 2)))
+                handleTag(s.substring(i + 1, end));
+            return end + 1;
+        }
+
+        /**
+         * Returns the index of the '>' ending a start tag, skipping quoted attribute values, or -1 if there is none.
+         */
+        private static int findStartTagEnd(String s, int i) {
+            for (; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '>')
+                    return i;
+                if (c == '=') {
+                    while (i + 1 < s.length() && Character.isWhitespace(s.charAt(i + 1)))
+                        i++;
+                    if (i + 1 < s.length() && (s.charAt(i + 1) == '\'' || s.charAt(i + 1) == '"')) {
+                        i = s.indexOf(s.charAt(i + 1), i + 2);
+                        if (i == -1)
+                            return -1;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        int length() {
+            return data.stream().mapToInt(String::length).sum();
+        }
+
+        private void handleTag(String tag) {
+            boolean isEndTag = tag.startsWith("/");
+            int nameStart = isEndTag ? 1 : 0, nameEnd = nameStart;
+            while (nameEnd < tag.length() && !Character.isWhitespace(tag.charAt(nameEnd)) && tag.charAt(nameEnd) != '/')
+                nameEnd++;
+            String name = tag.substring(nameStart, nameEnd).toLowerCase();
+            if (isEndTag) {
+                handleEndTag(name);
+            } else if (tag.endsWith("/") || tag.endsWith("/'") || tag.endsWith("/\"")) {
+                // Self-closing tags open and close at once, and create_net.py skips tags whose last attribute value
+                // ends with '/', as HTMLParser parses <ref name=blah/> as <ref name="blah/">
+            } else {
+                handleStartTag(name);
+            }
+        }
+
+        private void handleStartTag(String tag) {
+            if (tags.stream().anyMatch(TAGS_TO_IGNORE_WIKI_MARKS::contains))
+                return;
+            tags.add(tag);
+        }
+
+        private void handleEndTag(String tag) {
+            if (tags.stream().anyMatch(TAGS_TO_IGNORE_WIKI_MARKS::contains) && !tags.get(tags.size() - 1).equals(tag))
+                return;
+            while (tags.contains(tag))
+                if (tags.remove(tags.size() - 1).equals(tag))
+                    break;
+        }
+
+        private void handleData(String s) {
+            if (s.trim().isEmpty())
+                return;
+            if (tags.stream().anyMatch(TAGS_TO_CLEAN::contains))
+                return;
+            // Text in square brackets [[ ... ]] before the summary text should be ignored.
+            if (tags.contains("square") && data.isEmpty())
+                return;
+            data.add(s);
+        }
+
+        /**
+         * Returns the end of the reference starting at the '&', including a terminating semicolon, the index of the
+         * '&' if it starts none, or -1 if it is incomplete. References, such as &nbsp;, are dropped.
+         */
+        private static int skipReference(String s, int i) {
+            int end = i + 1;
+            if (end == s.length())
+                return -1;
+            if (s.charAt(end) == '#') {
+                end++;
+                boolean hex = end < s.length() && (s.charAt(end) == 'x' || s.charAt(end) == 'X');
+                int digitsStart = hex ? ++end : end;
+                while (end < s.length() && Character.digit(s.charAt(end), hex ? 16 : 10) != -1)
+                    end++;
+                if (end == digitsStart || end == s.length() || Character.digit(s.charAt(end), 16) != -1)
+                    return -1;
+            } else {
+                if (!isLetter(s.charAt(end)))
+                    return i;
+                while (end < s.length() && (Character.isLetterOrDigit(s.charAt(end)) || s.charAt(end) == '-'
+                        || s.charAt(end) == '.'))
+                    end++;
+                if (end == s.length())
+                    return -1;
+            }
+            return s.charAt(end) == ';' ? end + 1 : end;
+        }
+
+        private static boolean isLetter(char c) {
+            return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+        }
+    }
+}
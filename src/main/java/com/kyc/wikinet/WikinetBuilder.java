@@ -0,0 +1,278 @@
+package com.kyc.wikinet;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Builds the wikinet from the parts of a Wikipedia dump in one pass, replacing create_net.py and process_nets.py.
+ * Parts are streamed from their .bz2 (or uncompressed .xml) files and parsed in parallel, one part per worker, and
+ * their articles are either added straight to a {@link WikinetIndexBuilder} or written to the bucketed files of
+ * process_nets.py. Summaries and redirects are added in both directions, as by process_nets.py.
+ */
+public final class WikinetBuilder {
+
+    private static final int NUM_BUCKETS = 10000;
+    private static final int MAX_BUFFERED_CHARS = 1 << 24;
+
+    private final int numWorkers;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong numPages = new AtomicLong();
+    private final AtomicInteger numPartsDone = new AtomicInteger();
+    private final Object[] bucketLocks = new Object[NUM_BUCKETS];
+
+    public WikinetBuilder(int numWorkers) {
+        this.numWorkers = numWorkers;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            bucketLocks[i] = new Object();
+    }
+
+    /**
+     * Adds every article of the parts to the index builder.
+     */
+    public void buildIndex(List<Path> parts, WikinetIndexBuilder builder) throws IOException, InterruptedException {
+        run(parts, part -> parse(part, new WikiDumpParser.Handler() {
+            @Override
+            public void summary(String title, String summary) throws IOException {
+                builder.addSummary(title, summary);
+            }
+
+            @Override
+            public void redirects(String title, List<String> redirects) {
+                for (String redirect : redirects) {
+                    builder.addRedirect(title, redirect);
+                    builder.addRedirect(redirect, title);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Appends every article of the parts to the bucketed files under the processed directory, in the layout written by
+     * process_nets.py and read by {@link WikinetIndexBuilder#addProcessed(Path)}. Each worker buffers at most
+     * MAX_BUFFERED_CHARS of lines before appending them to their buckets.
+     */
+    public void buildProcessed(List<Path> parts, Path processed) throws IOException, InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Files.createDirectories(processed.resolve(String.format("redirects/%02d", i)));
+            Files.createDirectories(processed.resolve(String.format("summaries/%02d", i)));
+        }
+        run(parts, part -> {
+            Buckets summaries = new Buckets(processed.resolve("summaries"));
+            Buckets redirects = new Buckets(processed.resolve("redirects"));
+            parse(part, new WikiDumpParser.Handler() {
+                @Override
+                public void summary(String title, String summary) throws IOException {
+                    title = WikinetIndex.normalize(title);
+                    summary = summary.trim();
+                    if (!title.isEmpty() && !summary.isEmpty())
+                        summaries.add(title, summary);
+                    flushIfFull();
+                }
+
+                @Override
+                public void redirects(String title, List<String> targets) throws IOException {
+                    title = WikinetIndex.normalize(title);
+                    for (String target : targets) {
+                        target = WikinetIndex.normalize(target);
+                        if (!title.isEmpty() && !target.isEmpty()) {
+                            redirects.add(title, target);
+                            redirects.add(target, title);
+                        }
+                    }
+                    flushIfFull();
+                }
+
+                private void flushIfFull() throws IOException {
+                    if (summaries.bufferedChars + redirects.bufferedChars > MAX_BUFFERED_CHARS) {
+                        summaries.flush();
+                        redirects.flush();
+                    }
+                }
+            });
+            summaries.flush();
+            redirects.flush();
+        });
+    }
+
+    private interface PartTask {
+
+        void run(Path part) throws IOException;
+    }
+
+    /**
+     * Runs the task on every part on numWorkers threads, printing progress every 10 seconds.
+     */
+    private void run(List<Path> parts, PartTask task) throws IOException, InterruptedException {
+        long totalBytes = 0;
+        for (Path part : parts)
+            totalBytes += Files.size(part);
+        bytesRead.set(0);
+        numPages.set(0);
+        numPartsDone.set(0);
+        long startTime = System.nanoTime();
+        long total = totalBytes;
+        ExecutorService executor = Executors.newFixedThreadPool(
+            numWorkers, new ThreadFactoryBuilder().setNameFormat("wikinet-%d").setDaemon(true).build());
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("wikinet-progress").setDaemon(true).build());
+        reporter.scheduleAtFixedRate(() -> printProgress(parts.size(), total, startTime), 10, 10, TimeUnit.SECONDS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Path part : parts)
+                tasks.add(() -> {
+                    task.run(part);
+                    numPartsDone.incrementAndGet();
+                    return null;
+                });
+            for (Future<Void> future : executor.invokeAll(tasks))
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new IOException(e.getCause());
+                }
+        } finally {
+            executor.shutdownNow();
+            reporter.shutdownNow();
+        }
+        printProgress(parts.size(), total, startTime);
+    }
+
+    private void printProgress(int numParts, long totalBytes, long startTime) {
+        long millis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+        long bytes = bytesRead.get();
+        System.out.printf("%d/%d parts, %d pages, %d/%d MB read (%.1f%%), %.1f MB/s%n", numPartsDone.get(), numParts,
+            numPages.get(), bytes >> 20, totalBytes >> 20, 100. * bytes / Math.max(1, totalBytes),
+            bytes / 1e3 / millis);
+    }
+
+    /**
+     * Parses the part, counting its pages and the bytes read from its file as it goes.
+     */
+    private void parse(Path part, WikiDumpParser.Handler handler) throws IOException {
+        try (InputStream file = Files.newInputStream(part)) {
+            InputStream in = new FilterInputStream(new BufferedInputStream(file, 1 << 16)) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1)
+                        bytesRead.incrementAndGet();
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0)
+                        bytesRead.addAndGet(n);
+                    return n;
+                }
+            };
+            if (part.getFileName().toString().endsWith(".bz2"))
+                in = new BufferedInputStream(new BZip2CompressorInputStream(in, true), 1 << 16);
+            WikiDumpParser.parse(in, new WikiDumpParser.Handler() {
+                @Override
+                public void summary(String title, String summary) throws IOException {
+                    numPages.incrementAndGet();
+                    handler.summary(title, summary);
+                }
+
+                @Override
+                public void redirects(String title, List<String> redirects) throws IOException {
+                    numPages.incrementAndGet();
+                    handler.redirects(title, redirects);
+                }
+            });
+        }
+    }
+
+    /**
+     * Lines of one worker waiting to be appended to the bucketed files under a directory.
+     */
+    private final class Buckets {
+
+        final Path directory;
+        final List<List<String>> lines = new ArrayList<>(NUM_BUCKETS);
+        int bufferedChars;
+
+        Buckets(Path directory) {
+            this.directory = directory;
+            for (int i = 0; i < NUM_BUCKETS; i++)
+                lines.add(new ArrayList<>());
+        }
+
+        void add(String title, String value) {
+            lines.get(Math.floorMod(title.hashCode(), NUM_BUCKETS)).add(title + ' ' + value + '\n');
+            bufferedChars += title.length() + value.length() + 2;
+        }
+
+        void flush() throws IOException {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                List<String> bucket = lines.get(i);
+                if (bucket.isEmpty())
+                    continue;
+                Path file = directory.resolve(String.format("%02d/%02d", i / 100, i % 100));
+                synchronized (bucketLocks[i]) {
+                    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND)) {
+                        for (String line : bucket)
+                            out.write(line);
+                    }
+                }
+                bucket.clear();
+            }
+            bufferedChars = 0;
+        }
+    }
+
+    /**
+     * Builds the wikinet from the command line: WikinetBuilder output part... The output is an index file, or with
+     * -Dformat=processed the directory of bucketed files. The number of workers is set by the system property workers.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: WikinetBuilder <output> <dump part>...");
+            System.exit(2);
+        }
+        List<Path> parts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+            parts.add(Paths.get(args[i]));
+        WikinetBuilder wikinetBuilder =
+                new WikinetBuilder(Integer.getInteger("workers", Runtime.getRuntime().availableProcessors()));
+        if (System.getProperty("format", "index").equals("processed")) {
+            wikinetBuilder.buildProcessed(parts, Paths.get(args[0]));
+            return;
+        }
+        try (WikinetIndexBuilder builder = new WikinetIndexBuilder()) {
+            wikinetBuilder.buildIndex(parts, builder);
+            builder.write(Paths.get(args[0]));
+        }
+        try (WikinetIndex index = WikinetIndex.open(Paths.get(args[0]))) {
+            System.out.println("Indexed " + index.size() + " titles into " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.kyc.wikinet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only index of Wikipedia article titles to their summaries and redirects, memory-mapped from a file written by
+ * {@link WikinetIndexBuilder}, so lookups read the file through the page cache instead of loading it onto the heap.
+ * Titles are normalized to their letters in upper case, as by process_nets.py.
+ *
+ * The file starts with a header (magic, version, number of titles, redirects and summaries, and the lengths of the
+ * title and summary text) followed by these sections, with titles numbered in sorted order:
+ *
+ * <pre>
+ * int[numTitles + 1]   offset of each title in the title text
+ * int[numTitles]       titles sorted by length, then alphabetically, for pattern queries
+ * int[numTitles + 1]   start of each title's redirects
+ * int[numRedirects]    title redirected to, sorted for each title
+ * int[numTitles + 1]   start of each title's summaries
+ * long[numSummaries]   offset of each summary in the summary text
+ * int[numSummaries]    length in bytes of each summary
+ * byte[]               title text, in ASCII
+ * byte[]               summary text, in UTF-8
+ * </pre>
+ */
+public final class WikinetIndex implements AutoCloseable {
+
+    static final int MAGIC = 0x574e4554;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 5 * 4 + 2 * 8;
+    private static final long SUMMARY_CHUNK_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final int numTitles;
+    private final IntBuffer titleOffsets;
+    private final IntBuffer byLength;
+    private final IntBuffer redirectStarts;
+    private final IntBuffer redirectTargets;
+    private final IntBuffer summaryStarts;
+    private final LongBuffer summaryOffsets;
+    private final IntBuffer summaryLengths;
+    private final ByteBuffer titleText;
+    private final MappedByteBuffer[] summaryText;
+
+    private WikinetIndex(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            throw new IOException("Not a wikinet index of version " + VERSION);
+        this.numTitles = header.getInt();
+        int numRedirects = header.getInt();
+        int numSummaries = header.getInt();
+        long titleTextLength = header.getLong();
+        long summaryTextLength = header.getLong();
+
+        long tablesLength = 4L * (4 * numTitles + 3) + 4L * numRedirects + 12L * numSummaries;
+        if (tablesLength + titleTextLength > Integer.MAX_VALUE)
+            throw new IOException("Index has too many titles to map");
+        ByteBuffer tables = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, tablesLength + titleTextLength);
+        this.titleOffsets = slice(tables, 4 * (numTitles + 1)).asIntBuffer();
+        this.byLength = slice(tables, 4 * numTitles).asIntBuffer();
+        this.redirectStarts = slice(tables, 4 * (numTitles + 1)).asIntBuffer();
+        this.redirectTargets = slice(tables, 4 * numRedirects).asIntBuffer();
+        this.summaryStarts = slice(tables, 4 * (numTitles + 1)).asIntBuffer();
+        this.summaryOffsets = slice(tables, 8 * numSummaries).asLongBuffer();
+        this.summaryLengths = slice(tables, 4 * numSummaries).asIntBuffer();
+        this.titleText = slice(tables, (int) titleTextLength);
+
+        // Summary text may be larger than a single mapping, so it is mapped in chunks
+        long summaryStart = HEADER_SIZE + tablesLength + titleTextLength;
+        this.summaryText = new MappedByteBuffer[(int) ((summaryTextLength + SUMMARY_CHUNK_SIZE - 1) / SUMMARY_CHUNK_SIZE)];
+        for (int i = 0; i < summaryText.length; i++)
+            summaryText[i] = channel.map(FileChannel.MapMode.READ_ONLY, summaryStart + i * SUMMARY_CHUNK_SIZE,
+                Math.min(SUMMARY_CHUNK_SIZE, summaryTextLength - i * SUMMARY_CHUNK_SIZE));
+    }
+
+    public static WikinetIndex open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new WikinetIndex(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the letters of the title in upper case, dropping everything else.
+     */
+    public static String normalize(String title) {
+        StringBuilder normalized = new StringBuilder(title.length());
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (c >= 'a' && c <= 'z')
+                normalized.append((char) (c - 'a' + 'A'));
+            else if (c >= 'A' && c <= 'Z')
+                normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the number of titles, counting both articles and redirect targets.
+     */
+    public int size() {
+        return numTitles;
+    }
+
+    public boolean contains(String title) {
+        return find(normalize(title)) != -1;
+    }
+
+    /**
+     * Returns the summaries of the articles whose titles normalize to the given title.
+     */
+    public List<String> getSummaries(String title) {
+        List<String> summaries = new ArrayList<>();
+        int t = find(normalize(title));
+        if (t != -1)
+            for (int i = summaryStarts.get(t); i < summaryStarts.get(t + 1); i++)
+                summaries.add(readSummary(summaryOffsets.get(i), summaryLengths.get(i)));
+        return summaries;
+    }
+
+    /**
+     * Returns the titles that the given title redirects to or from, in sorted order.
+     */
+    public List<String> getRedirects(String title) {
+        List<String> redirects = new ArrayList<>();
+        int t = find(normalize(title));
+        if (t != -1)
+            for (int i = redirectStarts.get(t); i < redirectStarts.get(t + 1); i++)
+                redirects.add(getTitle(redirectTargets.get(i)));
+        return redirects;
+    }
+
+    /**
+     * Returns up to limit titles starting with the given prefix, in sorted order.
+     */
+    public List<String> findPrefix(String prefix, int limit) {
+        byte[] key = normalize(prefix).getBytes(StandardCharsets.US_ASCII);
+        List<String> titles = new ArrayList<>();
+        for (int t = lowerBound(key, 0, numTitles); t < numTitles && titles.size() < limit && startsWith(t, key); t++)
+            titles.add(getTitle(t));
+        return titles;
+    }
+
+    /**
+     * Returns up to limit titles matching the pattern, in which '?' stands for any letter, in sorted order. Only the
+     * titles of the pattern's length that start with its letters before the first '?' are scanned.
+     */
+    public List<String> findPattern(String pattern, int limit) {
+        pattern = pattern.toUpperCase();
+        int length = pattern.length();
+        int start = lengthBound(length), end = lengthBound(length + 1);
+        int firstWildcard = pattern.indexOf('?');
+        byte[] prefix = pattern.substring(0, firstWildcard == -1 ? length : firstWildcard).getBytes(StandardCharsets.US_ASCII);
+        List<String> titles = new ArrayList<>();
+        for (int i = lowerBoundByLength(prefix, start, end); i < end && titles.size() < limit; i++) {
+            int t = byLength.get(i);
+            if (!startsWith(t, prefix))
+                break;
+            if (matches(t, pattern))
+                titles.add(getTitle(t));
+        }
+        return titles;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String getTitle(int t) {
+        int start = titleOffsets.get(t), end = titleOffsets.get(t + 1);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = titleText.get(start + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private String readSummary(long offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            long position = offset + i;
+            bytes[i] = summaryText[(int) (position / SUMMARY_CHUNK_SIZE)].get((int) (position % SUMMARY_CHUNK_SIZE));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of the title, or -1 if there is none.
+     */
+    private int find(String title) {
+        byte[] key = title.getBytes(StandardCharsets.US_ASCII);
+        int t = lowerBound(key, 0, numTitles);
+        return t < numTitles && compare(t, key) == 0 ? t : -1;
+    }
+
+    /**
+     * Returns the first title from start to end that is not less than the key.
+     */
+    private int lowerBound(byte[] key, int start, int end) {
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (compare(mid, key) < 0)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the first index from start to end in the titles sorted by length whose title is not less than the key.
+     * All titles in that range must have the same length.
+     */
+    private int lowerBoundByLength(byte[] key, int start, int end) {
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (compare(byLength.get(mid), key) < 0)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the first index in the titles sorted by length whose title is at least the given length.
+     */
+    private int lengthBound(int length) {
+        int start = 0, end = numTitles;
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            int t = byLength.get(mid);
+            if (titleOffsets.get(t + 1) - titleOffsets.get(t) < length)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    private int compare(int t, byte[] key) {
+        int start = titleOffsets.get(t), length = titleOffsets.get(t + 1) - start;
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int diff = titleText.get(start + i) - key[i];
+            if (diff != 0)
+                return diff;
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int t, byte[] prefix) {
+        int start = titleOffsets.get(t);
+        if (titleOffsets.get(t + 1) - start < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (titleText.get(start + i) != prefix[i])
+                return false;
+        return true;
+    }
+
+    private boolean matches(int t, String pattern) {
+        int start = titleOffsets.get(t);
+        for (int i = 0; i < pattern.length(); i++)
+            if (pattern.charAt(i) != '?' && titleText.get(start + i) != pattern.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the next length bytes of the buffer as a buffer of their own, advancing past them.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
@@ -0,0 +1,256 @@
+package com.kyc.wikinet;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles article summaries and redirects into the binary format read by {@link WikinetIndex}. Titles are
+ * normalized with {@link WikinetIndex#normalize(String)}. Summary text is spooled to a temporary file as it is added,
+ * so only the titles and the small per-entry tables are kept on the heap.
+ */
+public final class WikinetIndexBuilder implements AutoCloseable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> titles = new ArrayList<>();
+    private final Path summaryFile;
+    private final OutputStream summaryOut;
+    private long summaryBytes;
+    private int numSummaries;
+    private int[] summaryTitles = new int[1024];
+    private long[] summaryOffsets = new long[1024];
+    private int[] summaryLengths = new int[1024];
+    private int numRedirects;
+    private int[] redirects = new int[2048];
+
+    public WikinetIndexBuilder() throws IOException {
+        this.summaryFile = Files.createTempFile("wikinet-summaries", ".tmp");
+        this.summaryOut = new BufferedOutputStream(Files.newOutputStream(summaryFile), 1 << 16);
+    }
+
+    /**
+     * Adds a summary of the article with the given title, trimmed as by process_nets.py. Titles that normalize to
+     * nothing and empty summaries are ignored.
+     */
+    public synchronized void addSummary(String title, String summary) throws IOException {
+        title = WikinetIndex.normalize(title);
+        summary = summary.trim();
+        if (title.isEmpty() || summary.isEmpty())
+            return;
+        byte[] bytes = summary.getBytes(StandardCharsets.UTF_8);
+        if (numSummaries == summaryTitles.length) {
+            summaryTitles = Arrays.copyOf(summaryTitles, 2 * numSummaries);
+            summaryOffsets = Arrays.copyOf(summaryOffsets, 2 * numSummaries);
+            summaryLengths = Arrays.copyOf(summaryLengths, 2 * numSummaries);
+        }
+        summaryTitles[numSummaries] = getId(title);
+        summaryOffsets[numSummaries] = summaryBytes;
+        summaryLengths[numSummaries] = bytes.length;
+        numSummaries++;
+        summaryOut.write(bytes);
+        summaryBytes += bytes.length;
+    }
+
+    /**
+     * Adds a redirect from one title to another. Only this direction is added.
+     */
+    public synchronized void addRedirect(String title, String target) {
+        title = WikinetIndex.normalize(title);
+        target = WikinetIndex.normalize(target);
+        if (title.isEmpty() || target.isEmpty())
+            return;
+        if (2 * numRedirects == redirects.length)
+            redirects = Arrays.copyOf(redirects, 2 * redirects.length);
+        redirects[2 * numRedirects] = getId(title);
+        redirects[2 * numRedirects + 1] = getId(target);
+        numRedirects++;
+    }
+
+    /**
+     * Adds the bucketed files written by process_nets.py: every line of the files under processed/summaries is a
+     * title and its summary, and every line of the files under processed/redirects is a title and a redirect.
+     */
+    public void addProcessed(Path processed) throws IOException {
+        for (Path file : listFiles(processed.resolve("summaries")))
+            for (String[] line : readLines(file))
+                addSummary(line[0], line[1]);
+        for (Path file : listFiles(processed.resolve("redirects")))
+            for (String[] line : readLines(file))
+                addRedirect(line[0], line[1]);
+    }
+
+    /**
+     * Writes the index of everything added so far.
+     */
+    public synchronized void write(Path output) throws IOException {
+        summaryOut.flush();
+        int numTitles = titles.size();
+
+        // Titles are numbered by their rank in sorted order in the index
+        Integer[] sorted = new Integer[numTitles];
+        for (int i = 0; i < numTitles; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, (id1, id2) -> titles.get(id1).compareTo(titles.get(id2)));
+        int[] ranks = new int[numTitles];
+        for (int rank = 0; rank < numTitles; rank++)
+            ranks[sorted[rank]] = rank;
+
+        int[] titleOffsets = new int[numTitles + 1];
+        int maxLength = 0;
+        for (int rank = 0; rank < numTitles; rank++) {
+            int length = titles.get(sorted[rank]).length();
+            titleOffsets[rank + 1] = titleOffsets[rank] + length;
+            maxLength = Math.max(maxLength, length);
+        }
+
+        // Counting sort of the ranks by title length keeps titles of each length in sorted order
+        int[] lengthStarts = new int[maxLength + 2];
+        for (int rank = 0; rank < numTitles; rank++)
+            lengthStarts[titleOffsets[rank + 1] - titleOffsets[rank] + 1]++;
+        for (int length = 0; length <= maxLength; length++)
+            lengthStarts[length + 1] += lengthStarts[length];
+        int[] byLength = new int[numTitles];
+        for (int rank = 0; rank < numTitles; rank++)
+            byLength[lengthStarts[titleOffsets[rank + 1] - titleOffsets[rank]]++] = rank;
+
+        int[] redirectStarts = new int[numTitles + 1];
+        int[] redirectTargets = groupByTitle(numRedirects, i -> ranks[redirects[2 * i]], redirectStarts,
+            i -> ranks[redirects[2 * i + 1]]);
+        int numUniqueRedirects = dedupe(redirectStarts, redirectTargets);
+
+        int[] summaryStarts = new int[numTitles + 1];
+        int[] summaryEntries = groupByTitle(numSummaries, i -> ranks[summaryTitles[i]], summaryStarts, i -> i);
+
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            out.writeInt(WikinetIndex.MAGIC);
+            out.writeInt(WikinetIndex.VERSION);
+            out.writeInt(numTitles);
+            out.writeInt(numUniqueRedirects);
+            out.writeInt(numSummaries);
+            out.writeLong(titleOffsets[numTitles]);
+            out.writeLong(summaryBytes);
+            writeInts(out, titleOffsets, numTitles + 1);
+            writeInts(out, byLength, numTitles);
+            writeInts(out, redirectStarts, numTitles + 1);
+            writeInts(out, redirectTargets, numUniqueRedirects);
+            writeInts(out, summaryStarts, numTitles + 1);
+            for (int i = 0; i < numSummaries; i++)
+                out.writeLong(summaryOffsets[summaryEntries[i]]);
+            for (int i = 0; i < numSummaries; i++)
+                out.writeInt(summaryLengths[summaryEntries[i]]);
+            for (int rank = 0; rank < numTitles; rank++)
+                out.writeBytes(titles.get(sorted[rank]));
+            Files.copy(summaryFile, out);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        summaryOut.close();
+        Files.deleteIfExists(summaryFile);
+    }
+
+    private int getId(String title) {
+        Integer id = ids.get(title);
+        if (id == null) {
+            id = titles.size();
+            ids.put(title, id);
+            titles.add(title);
+        }
+        return id;
+    }
+
+    /**
+     * Counting sorts the values of n entries by the title of each entry, filling in the start of each title's values.
+     */
+    private static int[] groupByTitle(int n, IntUnaryOperator titleOf, int[] starts, IntUnaryOperator valueOf) {
+        for (int i = 0; i < n; i++)
+            starts[titleOf.applyAsInt(i) + 1]++;
+        for (int title = 0; title + 1 < starts.length; title++)
+            starts[title + 1] += starts[title];
+        int[] next = Arrays.copyOf(starts, starts.length);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+            values[next[titleOf.applyAsInt(i)]++] = valueOf.applyAsInt(i);
+        return values;
+    }
+
+    /**
+     * Sorts and removes duplicates from each title's values in place, updating the starts, and returns the new
+     * number of values.
+     */
+    private static int dedupe(int[] starts, int[] values) {
+        int n = 0;
+        for (int title = 0; title + 1 < starts.length; title++) {
+            int start = starts[title], end = starts[title + 1];
+            Arrays.sort(values, start, end);
+            starts[title] = n;
+            for (int i = start; i < end; i++)
+                if (i == start || values[i] != values[i - 1])
+                    values[n++] = values[i];
+        }
+        starts[starts.length - 1] = n;
+        return n;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int n) throws IOException {
+        for (int i = 0; i < n; i++)
+            out.writeInt(values[i]);
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String[]> readLines(Path file) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space > 0)
+                    lines.add(new String[] { line.substring(0, space), line.substring(space + 1).trim() });
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Compiles the output of process_nets.py into an index: WikinetIndexBuilder processed-directory index-file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: WikinetIndexBuilder <processed directory> <index file>");
+            System.exit(2);
+        }
+        try (WikinetIndexBuilder builder = new WikinetIndexBuilder()) {
+            builder.addProcessed(Paths.get(args[0]));
+            builder.write(Paths.get(args[1]));
+        }
+        try (WikinetIndex index = WikinetIndex.open(Paths.get(args[1]))) {
+            System.out.println("Indexed " + index.size() + " titles into " + args[1]);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.kyc.hawkeye;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Word searches for tests that draw each letter as a bar whose width gives the letter, so that a stub OCR engine can
+ * read them back without Tesseract.
+ */
+final class BarWordsearch {
+
+    static final String LETTERS = "ACDEGNOSTX";
+    static final int SPACING = 30;
+    static final int HEIGHT = 12;
+
+    private BarWordsearch() {}
+
+    static int getWidth(char letter) {
+        return 4 + 2 * LETTERS.indexOf(letter);
+    }
+
+    /**
+     * Returns a white image of the given size with the rows of letters drawn from (x, y), SPACING pixels apart.
+     */
+    static BufferedImage draw(int width, int height, int x, int y, String... rows) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        draw(image, x, y, rows);
+        return image;
+    }
+
+    /**
+     * Draws the rows of letters onto the image from (x, y), SPACING pixels apart.
+     */
+    static void draw(BufferedImage image, int x, int y, String... rows) {
+        Graphics g = image.getGraphics();
+        g.setColor(Color.BLACK);
+        for (int row = 0; row < rows.length; row++)
+            for (int col = 0; col < rows[row].length(); col++)
+                g.fillRect(x + SPACING * col, y + SPACING * row, getWidth(rows[row].charAt(col)), HEIGHT);
+    }
+
+    /**
+     * Returns the blob of the letter's bar with its top left corner at (x, y).
+     */
+    static Blob getBlob(char letter, int x, int y) {
+        int[] runs = new int[3 * HEIGHT];
+        for (int row = 0; row < HEIGHT; row++) {
+            runs[3 * row] = y + row;
+            runs[3 * row + 1] = x;
+            runs[3 * row + 2] = x + getWidth(letter) - 1;
+        }
+        return new Blob(runs);
+    }
+
+    /**
+     * Reads the letters of the bars across the middle of the image.
+     */
+    static String read(BufferedImage image) {
+        StringBuilder text = new StringBuilder();
+        int y = image.getHeight() / 2, width = 0;
+        for (int x = 0; x <= image.getWidth(); x++)
+            if (x < image.getWidth() && image.getRGB(x, y) == Color.BLACK.getRGB()) {
+                width++;
+            } else if (width > 0) {
+                text.append(LETTERS.charAt((width - 4) / 2));
+                width = 0;
+            }
+        return text.toString();
+    }
+
+    static OcrEngine.Factory getOcrEngineFactory() {
+        return (datapath, allowedChars) -> BarWordsearch::read;
+    }
+
+    /**
+     * Returns a configuration that reads every bar separately, as bars of similar widths would otherwise be
+     * recognized as one glyph.
+     */
+    static WordsearchSolverConfiguration getConfig() {
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.glyphTolerance = -1;
+        config.preserveImage = true;
+        return config;
+    }
+
+    static Dictionary getDictionary(String... words) throws IOException {
+        File file = File.createTempFile("words", ".txt");
+        try {
+            Files.write(file.toPath(), Arrays.asList(words));
+            return Dictionary.load(file.getPath(), "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Multimap;
+
+public class BlobGridTest {
+
+    @Test
+    public void test() {
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.minBlobSeparation = 3;
+        config.minBlobSizeRelative = 0;
+        for (int side : new int[] {10, 32}) {
+            WordsearchSolver solver =
+                    new WordsearchSolver(new BufferedImage(30 * side, 30 * side, BufferedImage.TYPE_BYTE_BINARY), config, null);
+            List<Blob> blobs = getLetterBlobs(side, new Random(side));
+            List<Blob> cleanedBlobs = solver.getCleanedBlobs(blobs);
+            Assert.assertEquals(side * side, cleanedBlobs.size());
+            assertSameBlobs(getBruteForceCleanedBlobs(blobs, config.minBlobSeparation), cleanedBlobs);
+            assertBruteForceNeighbors(cleanedBlobs, solver.getBlobGraph(cleanedBlobs));
+        }
+    }
+
+    @Test
+    public void testScattered() {
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.minBlobSeparation = 3;
+        config.minBlobSizeRelative = 0;
+        for (int seed = 0; seed < 5; seed++) {
+            Random random = new Random(seed);
+            WordsearchSolver solver =
+                    new WordsearchSolver(new BufferedImage(400, 400, BufferedImage.TYPE_BYTE_BINARY), config, null);
+            List<Blob> blobs = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                int x = random.nextInt(390), y = random.nextInt(390);
+                int width = random.nextInt(8), height = 1 + random.nextInt(8);
+                int[] runs = new int[3 * height];
+                for (int row = 0; row < height; row++) {
+                    runs[3 * row] = y + row;
+                    runs[3 * row + 1] = x;
+                    runs[3 * row + 2] = x + width;
+                }
+                blobs.add(new Blob(runs));
+            }
+            List<Blob> cleanedBlobs = solver.getCleanedBlobs(blobs);
+            assertSameBlobs(getBruteForceCleanedBlobs(blobs, config.minBlobSeparation), cleanedBlobs);
+            assertBruteForceNeighbors(cleanedBlobs, solver.getBlobGraph(cleanedBlobs));
+        }
+    }
+
+    /**
+     * Returns the blobs of a square grid of letters 30 pixels apart, where every other letter is dotted like an i
+     * and has to be merged from two blobs.
+     */
+    private List<Blob> getLetterBlobs(int side, Random random) {
+        List<Blob> blobs = new ArrayList<>();
+        for (int row = 0; row < side; row++)
+            for (int col = 0; col < side; col++) {
+                int x = 30 * col + 5 + random.nextInt(5), y = 30 * row + 5 + random.nextInt(5);
+                if ((row + col) % 2 == 0) {
+                    blobs.add(new Blob(new int[] {y, x, x + 2}));
+                    blobs.add(new Blob(new int[] {y + 2, x, x + 2, y + 3, x, x + 2, y + 15, x, x + 2}));
+                } else {
+                    blobs.add(new Blob(new int[] {y, x, x + 12, y + 15, x, x + 12}));
+                }
+            }
+        return blobs;
+    }
+
+    /**
+     * Merges every pair of blobs closer than the separation by comparing all pairs, as getCleanedBlobs does with the
+     * grid, without dropping any small blobs.
+     */
+    private List<Blob> getBruteForceCleanedBlobs(List<Blob> blobs, int sep) {
+        List<Blob> cleanedBlobs = new ArrayList<>();
+        for (Blob blob : blobs) {
+            boolean merged;
+            do {
+                merged = false;
+                for (Iterator<Blob> it = cleanedBlobs.iterator(); it.hasNext() && !merged;) {
+                    Blob other = it.next();
+                    if (blob.minX < other.maxX + sep && other.minX < blob.maxX + sep
+                            && blob.minY < other.maxY + sep && other.minY < blob.maxY + sep) {
+                        it.remove();
+                        blob = blob.merge(other);
+                        merged = true;
+                    }
+                }
+            } while (merged);
+            cleanedBlobs.add(blob);
+        }
+        return cleanedBlobs;
+    }
+
+    private void assertSameBlobs(List<Blob> expected, List<Blob> actual) {
+        Assert.assertEquals(describe(expected), describe(actual));
+    }
+
+    private Set<String> describe(List<Blob> blobs) {
+        return blobs.stream()
+            .map(blob -> blob.minX + "," + blob.minY + "," + blob.maxX + "," + blob.maxY + ":" + blob.runs.length)
+            .collect(Collectors.toSet());
+    }
+
+    private void assertBruteForceNeighbors(List<Blob> blobs, Multimap<Blob, Blob> blobGraph) {
+        for (Blob blob : blobs)
+            Assert.assertEquals(getBruteForceNeighbors(blob, blobs), new HashSet<>(blobGraph.get(blob)));
+    }
+
+    private Set<Blob> getBruteForceNeighbors(Blob blob, Collection<Blob> blobs) {
+        double minDist = Double.POSITIVE_INFINITY;
+        for (Blob other : blobs)
+            if (other != blob)
+                minDist = Math.min(minDist, blob.center.distance(other.center));
+        Set<Blob> neighbors = new HashSet<>();
+        for (Blob other : blobs)
+            if (other != blob && blob.center.distance(other.center) < minDist * 1.8)
+                neighbors.add(other);
+        return neighbors;
+    }
+}
@@ -0,0 +1,40 @@
+package com.kyc.hawkeye;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DictionaryTest {
+
+    @Test
+    public void test() throws Exception {
+        File words = File.createTempFile("words", ".txt");
+        words.deleteOnExit();
+        Files.write(words.toPath(), Arrays.asList("plains", "Plainsman", "plain", "foot", "football", "x-ray", "a", ""));
+
+        Dictionary dictionary = Dictionary.load(words.getPath(), "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        Assert.assertEquals(6, dictionary.size());
+        Assert.assertTrue(dictionary.contains("PLAIN"));
+        Assert.assertTrue(dictionary.contains("PLAINS"));
+        Assert.assertTrue(dictionary.contains("PLAINSMAN"));
+        Assert.assertTrue(dictionary.contains("FOOTBALL"));
+        Assert.assertTrue(dictionary.contains("A"));
+        Assert.assertFalse(dictionary.contains("PLAI"));
+        Assert.assertFalse(dictionary.contains("FOOTBALLS"));
+        Assert.assertFalse(dictionary.contains("X-RAY"));
+        Assert.assertFalse(dictionary.contains(""));
+
+        int node = Dictionary.ROOT;
+        for (char c : "PLAINSM".toCharArray())
+            node = dictionary.child(node, c);
+        Assert.assertFalse(dictionary.isWord(node));
+        Assert.assertEquals(Dictionary.NONE, dictionary.child(node, 'X'));
+
+        // Character sets that differ only in order or repetition share one dictionary
+        Assert.assertSame(Dictionary.get(words.getPath(), "ABCDEFGHIJKLMNOPQRSTUVWXYZ"),
+            Dictionary.get(words.getPath(), "ZYXWVUTSRQPONMLKJIHGFEDCBAA"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GlyphIndexTest {
+
+    @Test
+    public void test() {
+        Random random = new Random(0);
+        List<boolean[]> shapes = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            shapes.add(getRandomShape(random));
+        List<Glyph> glyphs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            glyphs.add(getNoisyGlyph(shapes.get(random.nextInt(shapes.size())), random.nextInt(12), random));
+
+        for (int tolerance : new int[] {-1, 0, 3, 8, 20}) {
+            GlyphIndex<Integer> index = new GlyphIndex<>(tolerance);
+            List<Glyph> added = new ArrayList<>();
+            int numFound = 0;
+            for (Glyph glyph : glyphs) {
+                Integer nearest = index.findNearest(glyph);
+                Assert.assertEquals(getBruteForceNearest(glyph, added, tolerance), nearest);
+                if (nearest == null) {
+                    index.add(glyph, added.size());
+                    added.add(glyph);
+                } else {
+                    numFound++;
+                }
+            }
+            Assert.assertTrue(tolerance < 0 ? numFound == 0 : numFound > 0);
+        }
+    }
+
+    private static boolean[] getRandomShape(Random random) {
+        boolean[] cells = new boolean[Glyph.SIZE * Glyph.SIZE];
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = random.nextBoolean();
+        return cells;
+    }
+
+    /**
+     * Returns the glyph of the shape with about the given number of random cells flipped, drawn as a 16x16 blob whose
+     * corners are always set so that the cells of the blob are the cells of the glyph.
+     */
+    private static Glyph getNoisyGlyph(boolean[] shape, int numFlips, Random random) {
+        boolean[] cells = shape.clone();
+        for (int i = 0; i < numFlips; i++)
+            cells[random.nextInt(cells.length)] ^= true;
+        cells[0] = cells[cells.length - 1] = true;
+        List<Integer> runs = new ArrayList<>();
+        for (int i = 0; i < cells.length; i++)
+            if (cells[i]) {
+                runs.add(i / Glyph.SIZE);
+                runs.add(i % Glyph.SIZE);
+                runs.add(i % Glyph.SIZE);
+            }
+        return Glyph.of(new Blob(runs.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    private static Integer getBruteForceNearest(Glyph glyph, List<Glyph> glyphs, int tolerance) {
+        Integer nearest = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < glyphs.size(); i++) {
+            int distance = glyphs.get(i).distance(glyph);
+            if (distance <= tolerance && distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+}
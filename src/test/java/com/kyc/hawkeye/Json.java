@@ -0,0 +1,183 @@
+package com.kyc.hawkeye;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strict JSON parser for checking output in tests. Objects are parsed to maps in key order, arrays to lists, integers to
+ * longs and other numbers to doubles.
+ */
+final class Json {
+
+    private final String s;
+    private int pos;
+
+    private Json(String s) {
+        this.s = s;
+    }
+
+    /**
+     * Parses the JSON document, throwing an IllegalArgumentException if it is invalid.
+     */
+    static Object parse(String s) {
+        Json json = new Json(s);
+        Object value = json.parseValue();
+        json.skipWhitespace();
+        if (json.pos != s.length())
+            throw json.error("Expected end of document");
+        return value;
+    }
+
+    private Object parseValue() {
+        skipWhitespace();
+        if (pos == s.length())
+            throw error("Expected a value");
+        char c = s.charAt(pos);
+        if (c == '{')
+            return parseObject();
+        if (c == '[')
+            return parseArray();
+        if (c == '"')
+            return parseString();
+        if (c == '-' || (c >= '0' && c <= '9'))
+            return parseNumber();
+        for (String literal : new String[] { "true", "false", "null" })
+            if (s.startsWith(literal, pos)) {
+                pos += literal.length();
+                return literal.equals("null") ? null : Boolean.valueOf(literal);
+            }
+        throw error("Unexpected character");
+    }
+
+    private Map<String, Object> parseObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        do {
+            skipWhitespace();
+            if (peek() != '"')
+                throw error("Expected a key");
+            String key = parseString();
+            skipWhitespace();
+            expect(':');
+            if (object.put(key, parseValue()) != null)
+                throw error("Duplicate key " + key);
+            skipWhitespace();
+        } while (tryConsume(','));
+        expect('}');
+        return object;
+    }
+
+    private List<Object> parseArray() {
+        List<Object> array = new ArrayList<>();
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        do {
+            array.add(parseValue());
+            skipWhitespace();
+        } while (tryConsume(','));
+        expect(']');
+        return array;
+    }
+
+    private String parseString() {
+        StringBuilder string = new StringBuilder();
+        expect('"');
+        while (true) {
+            if (pos == s.length())
+                throw error("Unterminated string");
+            char c = s.charAt(pos++);
+            if (c == '"')
+                return string.toString();
+            if (c < ' ')
+                throw error("Unescaped control character");
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            if (pos == s.length())
+                throw error("Unterminated escape");
+            char escape = s.charAt(pos++);
+            int index = "\"\\/bfnrt".indexOf(escape);
+            if (index != -1) {
+                string.append("\"\\/\b\f\n\r\t".charAt(index));
+            } else if (escape == 'u' && pos + 4 <= s.length()) {
+                try {
+                    string.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid unicode escape");
+                }
+                pos += 4;
+            } else {
+                throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Object parseNumber() {
+        int start = pos;
+        tryConsume('-');
+        if (!tryConsume('0')) {
+            if (peek() < '1' || peek() > '9')
+                throw error("Expected a digit");
+            skipDigits();
+        }
+        boolean isInteger = true;
+        if (tryConsume('.')) {
+            isInteger = false;
+            if (peek() < '0' || peek() > '9')
+                throw error("Expected a digit");
+            skipDigits();
+        }
+        if (tryConsume('e') || tryConsume('E')) {
+            isInteger = false;
+            if (!tryConsume('+'))
+                tryConsume('-');
+            if (peek() < '0' || peek() > '9')
+                throw error("Expected a digit");
+            skipDigits();
+        }
+        String number = s.substring(start, pos);
+        return isInteger ? (Object) Long.valueOf(number) : (Object) Double.valueOf(number);
+    }
+
+    private void skipDigits() {
+        while (peek() >= '0' && peek() <= '9')
+            pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < s.length() && " \t\n\r".indexOf(s.charAt(pos)) != -1)
+            pos++;
+    }
+
+    private char peek() {
+        return pos < s.length() ? s.charAt(pos) : 0;
+    }
+
+    private boolean tryConsume(char c) {
+        if (peek() != c)
+            return false;
+        pos++;
+        return true;
+    }
+
+    private void expect(char c) {
+        if (!tryConsume(c))
+            throw error("Expected " + c);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " of " + s);
+    }
+}
@@ -0,0 +1,123 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OcrEnginePoolTest {
+
+    /**
+     * Reads an image as the letter at its width in the whitelist, remembering the thread that created it and whether
+     * it was closed by that thread.
+     */
+    private static final class WidthEngine implements OcrEngine {
+
+        final String allowedChars;
+        final Thread thread = Thread.currentThread();
+        boolean closed;
+
+        WidthEngine(String allowedChars) {
+            this.allowedChars = allowedChars;
+        }
+
+        @Override
+        public String recognize(BufferedImage image) {
+            Assert.assertSame(thread, Thread.currentThread());
+            Assert.assertFalse(closed);
+            return allowedChars.charAt(image.getWidth() % allowedChars.length()) + "";
+        }
+
+        @Override
+        public void close() {
+            Assert.assertSame(thread, Thread.currentThread());
+            Assert.assertFalse(closed);
+            closed = true;
+        }
+    }
+
+    private final List<WidthEngine> engines = new ArrayList<>();
+
+    private synchronized OcrEngine createEngine(String datapath, String allowedChars) {
+        WidthEngine engine = new WidthEngine(allowedChars);
+        engines.add(engine);
+        return engine;
+    }
+
+    @Test
+    public void testRecognize() throws Exception {
+        List<BufferedImage> images = new ArrayList<>();
+        for (int width = 1; width <= 60; width++)
+            images.add(new BufferedImage(width, 5, BufferedImage.TYPE_INT_RGB));
+        List<String> serialTexts = new ArrayList<>();
+        OcrEngine serialEngine = new WidthEngine("ABC");
+        for (BufferedImage image : images)
+            serialTexts.add(serialEngine.recognize(image));
+
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(3, this::createEngine)) {
+            ocrEnginePool.warmUp("data", "ABC");
+            Assert.assertEquals(3, engines.size());
+
+            List<Future<OcrEnginePool.Result>> results = new ArrayList<>();
+            for (BufferedImage image : images)
+                results.add(ocrEnginePool.recognize(image, "data", "ABC"));
+            List<String> texts = new ArrayList<>();
+            for (Future<OcrEnginePool.Result> result : results)
+                texts.add(result.get().text);
+            Assert.assertEquals(serialTexts, texts);
+            // Every thread reused the engine it warmed up
+            Assert.assertEquals(3, engines.size());
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(1, this::createEngine)) {
+            BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            List<String> configs = Arrays.asList("AB", "CD", "EF", "GH", "IJ");
+            for (String allowedChars : configs)
+                Assert.assertEquals(allowedChars.substring(1), recognize(ocrEnginePool, image, allowedChars));
+            // The least recently used engine was closed to make room for the fifth
+            Assert.assertEquals(5, engines.size());
+            Assert.assertTrue(engines.get(0).closed);
+            for (WidthEngine engine : engines.subList(1, 5))
+                Assert.assertFalse(engine.closed);
+
+            Assert.assertEquals("J", recognize(ocrEnginePool, image, "IJ"));
+            Assert.assertEquals(5, engines.size());
+            Assert.assertEquals("B", recognize(ocrEnginePool, image, "AB"));
+            Assert.assertEquals(6, engines.size());
+            Assert.assertTrue(engines.get(1).closed);
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        OcrEnginePool ocrEnginePool = new OcrEnginePool(2, this::createEngine);
+        ocrEnginePool.warmUp("data", "AB");
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Assert.assertEquals("B", recognize(ocrEnginePool, image, "AB"));
+        ocrEnginePool.close();
+
+        Assert.assertEquals(2, engines.size());
+        for (WidthEngine engine : engines)
+            Assert.assertTrue(engine.closed);
+        try {
+            ocrEnginePool.recognize(image, "data", "AB");
+            Assert.fail("Expected the closed pool to reject the image");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+    }
+
+    private static String recognize(OcrEnginePool ocrEnginePool, BufferedImage image, String allowedChars)
+            throws InterruptedException, ExecutionException {
+        return ocrEnginePool.recognize(image, "data", allowedChars).get().text;
+    }
+}
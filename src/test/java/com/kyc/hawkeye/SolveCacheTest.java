@@ -0,0 +1,147 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class SolveCacheTest {
+
+    private Dictionary dictionary;
+    private OcrEnginePool ocrEnginePool;
+    private WordsearchSolver solver;
+
+    @Before
+    public void setUp() throws Exception {
+        dictionary = BarWordsearch.getDictionary("cat", "dog");
+        ocrEnginePool = new OcrEnginePool(1, BarWordsearch.getOcrEngineFactory());
+    }
+
+    @After
+    public void tearDown() {
+        ocrEnginePool.close();
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        SolveCache cache = new SolveCache(1 << 20, 1 << 20);
+        WordsearchResult result = search(cache, draw("CAT"), BarWordsearch.getConfig());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("CAT")), result.getWords());
+        assertStats(0, 1, 0, 1, cache);
+
+        // Another image with the same pixels and an equal configuration is a result hit
+        Assert.assertSame(result, search(cache, draw("CAT"), BarWordsearch.getConfig()));
+        assertStats(0, 1, 1, 1, cache);
+        Assert.assertTrue(solver.getMetrics().getStages().isEmpty());
+
+        // Changing a word search field reuses the letter layout without binarizing, labeling or reading the image
+        WordsearchSolverConfiguration config = BarWordsearch.getConfig();
+        config.minWordLength = 4;
+        Assert.assertEquals(new HashSet<>(), search(cache, draw("CAT"), config).getWords());
+        assertStats(1, 1, 1, 2, cache);
+        Set<SolveMetrics.Stage> stages = solver.getMetrics().getStages().keySet();
+        Assert.assertFalse(stages.contains(SolveMetrics.Stage.DARK_PIXELS));
+        Assert.assertFalse(stages.contains(SolveMetrics.Stage.BLOBS));
+        Assert.assertFalse(stages.contains(SolveMetrics.Stage.LETTERS));
+        Assert.assertTrue(stages.contains(SolveMetrics.Stage.VALID_WORDS));
+
+        // Changing a layout field or the pixels misses both caches
+        config = BarWordsearch.getConfig();
+        config.darkCutoff = 128;
+        Assert.assertEquals(result.getWords(), search(cache, draw("CAT"), config).getWords());
+        assertStats(1, 2, 1, 3, cache);
+        Assert.assertTrue(solver.getMetrics().getStages().containsKey(SolveMetrics.Stage.BLOBS));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("DOG")),
+            search(cache, draw("DOG"), BarWordsearch.getConfig()).getWords());
+        assertStats(1, 3, 1, 4, cache);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        SolveCache cache = new SolveCache(0, 0);
+        WordsearchResult result = search(cache, draw("CAT"), BarWordsearch.getConfig());
+        Assert.assertNotSame(result, search(cache, draw("CAT"), BarWordsearch.getConfig()));
+        Assert.assertTrue(solver.getMetrics().getStages().containsKey(SolveMetrics.Stage.BLOBS));
+        assertStats(0, 2, 0, 2, cache);
+        Assert.assertEquals(2, cache.getLayoutStats().evictionCount());
+        Assert.assertEquals(2, cache.getResultStats().evictionCount());
+    }
+
+    @Test
+    public void testCancelledLoad() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The OCR engine holds up the first search's load until released
+        OcrEngine.Factory heldReader = (datapath, allowedChars) -> image -> {
+            reading.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+            return BarWordsearch.read(image);
+        };
+        SolveCache cache = new SolveCache(1 << 20, 1 << 20);
+        try (OcrEnginePool heldPool = new OcrEnginePool(1, heldReader)) {
+            WordsearchSolver first = createSolver(draw("CAT"), BarWordsearch.getConfig(), heldPool);
+            WordsearchSolver second = createSolver(draw("CAT"), BarWordsearch.getConfig(), heldPool);
+            FutureTask<WordsearchResult> firstSearch = new FutureTask<>(() -> cache.search(first));
+            FutureTask<WordsearchResult> secondSearch = new FutureTask<>(() -> cache.search(second));
+            new Thread(firstSearch).start();
+            Assert.assertTrue(reading.await(10, TimeUnit.SECONDS));
+            Thread secondThread = new Thread(secondSearch);
+            secondThread.start();
+            // Wait for the second search to block on the first search's load
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (secondThread.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            Assert.assertEquals(Thread.State.WAITING, secondThread.getState());
+
+            first.cancel();
+            try {
+                firstSearch.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the cancelled search to fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof CancellationException);
+            }
+            release.countDown();
+            // The second search loads again instead of failing with the first
+            Assert.assertEquals(new HashSet<>(Arrays.asList("CAT")), secondSearch.get(10, TimeUnit.SECONDS).getWords());
+        }
+    }
+
+    private WordsearchResult search(SolveCache cache, BufferedImage image, WordsearchSolverConfiguration config)
+            throws Exception {
+        solver = createSolver(image, config, ocrEnginePool);
+        return cache.search(solver);
+    }
+
+    private WordsearchSolver createSolver(BufferedImage image, WordsearchSolverConfiguration config,
+            OcrEnginePool ocrEnginePool) {
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        solver.setGlyphCache(new GlyphCache(0));
+        solver.setOcrEnginePool(ocrEnginePool);
+        return solver;
+    }
+
+    private static BufferedImage draw(String word) {
+        return BarWordsearch.draw(150, 100, 10, 10, word, "XXX", "XXX");
+    }
+
+    private static void assertStats(long layoutHits, long layoutMisses, long resultHits, long resultMisses,
+            SolveCache cache) {
+        Assert.assertEquals(layoutHits, cache.getLayoutStats().hitCount());
+        Assert.assertEquals(layoutMisses, cache.getLayoutStats().missCount());
+        Assert.assertEquals(resultHits, cache.getResultStats().hitCount());
+        Assert.assertEquals(resultMisses, cache.getResultStats().missCount());
+    }
+}
@@ -0,0 +1,54 @@
+package com.kyc.hawkeye;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SolveMetricsTest {
+
+    @Test
+    public void test() throws Exception {
+        SolveMetrics metrics = new SolveMetrics();
+        Assert.assertEquals("{\"stages\": {}, \"counts\": {}}", metrics.toJson());
+
+        metrics.start();
+        Thread.sleep(20);
+        metrics.stop(SolveMetrics.Stage.LETTERS);
+        long lettersNanos = metrics.getStages().get(SolveMetrics.Stage.LETTERS).wallNanos;
+        Assert.assertTrue(lettersNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.start();
+        byte[] allocation = new byte[1 << 20];
+        metrics.stop(SolveMetrics.Stage.BLOBS);
+        metrics.count("blobs", 3);
+        metrics.count("words", 1);
+        metrics.count("blobs", 4);
+
+        // A stage that stops twice, such as once per region, adds up both times
+        metrics.start();
+        Thread.sleep(10);
+        metrics.stop(SolveMetrics.Stage.LETTERS);
+        SolveMetrics.StageMetrics letters = metrics.getStages().get(SolveMetrics.Stage.LETTERS);
+        Assert.assertTrue(letters.wallNanos >= lettersNanos + TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Stages are listed in solve order, and only the stages that ran
+        Assert.assertEquals(Arrays.asList(SolveMetrics.Stage.BLOBS, SolveMetrics.Stage.LETTERS),
+            Arrays.asList(metrics.getStages().keySet().toArray()));
+        SolveMetrics.StageMetrics blobs = metrics.getStages().get(SolveMetrics.Stage.BLOBS);
+        Assert.assertTrue(blobs.allocatedBytes == -1 || blobs.allocatedBytes >= allocation.length);
+        Assert.assertEquals(Arrays.asList("blobs", "words"), Arrays.asList(metrics.getCounts().keySet().toArray()));
+        Assert.assertEquals(7, (long) metrics.getCounts().get("blobs"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> json = (Map<String, Map<String, Object>>) Json.parse(metrics.toJson());
+        Assert.assertEquals(Arrays.asList("blobs", "letters"), Arrays.asList(json.get("stages").keySet().toArray()));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> lettersJson = (Map<String, Object>) json.get("stages").get("letters");
+        Assert.assertEquals(letters.wallNanos / 1e6, (Double) lettersJson.get("wallMillis"), 1e-9);
+        Assert.assertEquals(letters.allocatedBytes, lettersJson.get("allocatedBytes"));
+        Assert.assertEquals(7L, json.get("counts").get("blobs"));
+        Assert.assertEquals(1L, json.get("counts").get("words"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.kyc.hawkeye;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordsearchBatchSolverTest {
+
+    @Test
+    public void testResume() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        Path output = Files.createTempFile("batch", ".jsonl");
+        try {
+            BufferedImage blank = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+            Graphics g = blank.getGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, 20, 10);
+            ImageIO.write(blank, "png", directory.resolve("a \"blank\".png").toFile());
+            Files.write(directory.resolve("b.png"), new byte[] { 1, 2, 3 });
+            Files.write(directory.resolve("notes.txt"), new byte[] { 1, 2, 3 });
+            // Files without an extension are not images, even if named like one
+            Files.write(directory.resolve("png"), new byte[] { 1, 2, 3 });
+            Path dictionaryPath = directory.resolve("words.txt");
+            Files.write(dictionaryPath, Arrays.asList("CAT"));
+            Files.write(output, "{\"file\": \"b.p".getBytes(StandardCharsets.UTF_8));
+
+            WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+            Dictionary dictionary = Dictionary.load(dictionaryPath.toString(), config.allowedCharsForOCR);
+            WordsearchBatchSolver batchSolver =
+                    new WordsearchBatchSolver(config, dictionary, null, new GlyphCache(10), 2);
+            batchSolver.solveDirectory(directory, output);
+            Assert.assertEquals(1, batchSolver.getNumSolved());
+            Assert.assertEquals(1, batchSolver.getNumFailed());
+            List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+            Assert.assertEquals(2, lines.size());
+            Assert.assertTrue(lines.contains("{\"file\": \"a \\\"blank\\\".png\", \"words\": {}}"));
+
+            // The failed image is retried, replacing its line, and the solved one is skipped
+            batchSolver = new WordsearchBatchSolver(config, dictionary, null, new GlyphCache(10), 2);
+            batchSolver.solveDirectory(directory, output);
+            Assert.assertEquals(0, batchSolver.getNumSolved());
+            Assert.assertEquals(1, batchSolver.getNumFailed());
+            Assert.assertEquals(1, batchSolver.getNumSkipped());
+            lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+            Assert.assertEquals(2, lines.size());
+            Assert.assertEquals(1, lines.stream().filter(line -> line.startsWith("{\"file\": \"b.png\"")).count());
+        } finally {
+            Files.delete(output);
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testReadFileName() {
+        StringBuilder file = new StringBuilder();
+        String line = "{\"file\": \"a\\\"\\u00e9\\\\.png\", \"words\": {}}";
+        Assert.assertEquals(line.indexOf(", \"words\""), WordsearchBatchSolver.readFileName(line, file));
+        Assert.assertEquals("a\"\u00e9\\.png", file.toString());
+        for (String truncated : Arrays.asList("{\"file\": \"a\\", "{\"file\": \"a\\u00", "{\"file\": \"a\\u00zz\"",
+            "{\"file\": \"a.png", "{\"file\": a.png"))
+            Assert.assertEquals(-1, WordsearchBatchSolver.readFileName(truncated, new StringBuilder()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.kyc.hawkeye;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordsearchResultTest {
+
+    // A word with characters that must be escaped in JSON, to check the keys as well as the letters
+    private static final String ESCAPED_WORD = "A\"B\\C\u0001D\u00e9";
+
+    private final Blob c = new Blob(new int[] { 5, 1, 3, 6, 2, 4 });
+    private final Blob a = new Blob(new int[] { 5, 10, 10 });
+    private final Blob t = new Blob(new int[] { 4, 20, 22, 5, 21, 21, 6, 21, 21 });
+    private final WordsearchResult result;
+
+    public WordsearchResultTest() {
+        Map<String, List<Blob>> words = new LinkedHashMap<>();
+        words.put("CAT", Arrays.asList(c, a, t));
+        words.put(ESCAPED_WORD, Arrays.asList(t, a));
+        result = new WordsearchResult(words);
+    }
+
+    @Test
+    public void testPoints() throws Exception {
+        Map<String, List<Long>> points = new LinkedHashMap<>();
+        result.toPoints().forEach((word, wordPoints) -> points.put(word, toLongs(wordPoints)));
+        Assert.assertEquals(Arrays.asList(1L, 5L, 2L, 5L, 3L, 5L, 2L, 6L, 3L, 6L, 4L, 6L, 10L, 5L, 20L, 4L, 21L, 4L,
+            22L, 4L, 21L, 5L, 21L, 6L), points.get("CAT"));
+        Assert.assertEquals(points, parse(WordsearchResult.Encoding.POINTS));
+    }
+
+    @Test
+    public void testBoxes() throws Exception {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("CAT", Arrays.asList(Arrays.asList(1L, 5L, 4L, 6L), Arrays.asList(10L, 5L, 10L, 5L),
+            Arrays.asList(20L, 4L, 22L, 6L)));
+        expected.put(ESCAPED_WORD, Arrays.asList(Arrays.asList(20L, 4L, 22L, 6L), Arrays.asList(10L, 5L, 10L, 5L)));
+        Assert.assertEquals(expected, parse(WordsearchResult.Encoding.BOXES));
+    }
+
+    @Test
+    public void testRuns() throws Exception {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("CAT", Arrays.asList(toLongs(c.runs), toLongs(a.runs), toLongs(t.runs)));
+        expected.put(ESCAPED_WORD, Arrays.asList(toLongs(t.runs), toLongs(a.runs)));
+        Assert.assertEquals(expected, parse(WordsearchResult.Encoding.RUNS));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        for (WordsearchResult.Encoding encoding : WordsearchResult.Encoding.values()) {
+            StringWriter out = new StringWriter();
+            WordsearchResult.EMPTY.writeJson(out, encoding);
+            Assert.assertEquals(new LinkedHashMap<>(), Json.parse(out.toString()));
+        }
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.writeBinary(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(2, in.readInt());
+        for (String word : result.getWords()) {
+            Assert.assertEquals(word, in.readUTF());
+            List<Blob> blobs = word.equals("CAT") ? Arrays.asList(c, a, t) : Arrays.asList(t, a);
+            Assert.assertEquals(blobs.size(), in.readShort());
+            for (Blob blob : blobs) {
+                Assert.assertEquals(blob.minX, in.readInt());
+                Assert.assertEquals(blob.minY, in.readInt());
+                Assert.assertEquals(blob.maxX, in.readInt());
+                Assert.assertEquals(blob.maxY, in.readInt());
+                int numRuns = in.readInt();
+                Assert.assertEquals(blob.runs.length / 3, numRuns);
+                for (int i = 0; i < 3 * numRuns; i++)
+                    Assert.assertEquals(blob.runs[i], in.readInt());
+            }
+        }
+        Assert.assertEquals(-1, in.read());
+    }
+
+    private Object parse(WordsearchResult.Encoding encoding) throws Exception {
+        StringWriter out = new StringWriter();
+        result.writeJson(out, encoding);
+        return Json.parse(out.toString());
+    }
+
+    private static List<Long> toLongs(List<Integer> values) {
+        List<Long> longs = new ArrayList<>();
+        for (int value : values)
+            longs.add((long) value);
+        return longs;
+    }
+
+    private static List<Long> toLongs(int[] values) {
+        List<Long> longs = new ArrayList<>();
+        for (int value : values)
+            longs.add((long) value);
+        return longs;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kyc.hawkeye;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WordsearchSessionTest {
+
+    private final BufferedImage image = BarWordsearch.draw(150, 120, 10, 10, "CATS", "XOXX", "XXGX");
+    private final WordsearchSolverConfiguration config = BarWordsearch.getConfig();
+    private final WordsearchSession session = new WordsearchSession(image);
+    private Dictionary dictionary;
+    private OcrEnginePool ocrEnginePool;
+
+    @Before
+    public void setUp() throws Exception {
+        dictionary = BarWordsearch.getDictionary("cat", "cats", "cog");
+        ocrEnginePool = new OcrEnginePool(1, BarWordsearch.getOcrEngineFactory());
+    }
+
+    @After
+    public void tearDown() {
+        ocrEnginePool.close();
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        assertSearch(config -> {}, EnumSet.allOf(SolveStage.class));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("CATS", "COG")),
+            session.search(createSolver(image)).getWords());
+        Assert.assertEquals(EnumSet.noneOf(SolveStage.class), session.getLastRunStages());
+
+        // Each change reruns its stage and the stages that use its output, and nothing else
+        assertSearch(config -> config.darkCutoff = 128, EnumSet.allOf(SolveStage.class));
+        assertSearch(config -> config.minBlobSizeRelative = 0.01, EnumSet.range(SolveStage.CLEANED_BLOBS,
+            SolveStage.CLEANED_VALID_WORDS));
+        assertSearch(config -> config.maxBlobSeparationRatio = 1.2, EnumSet.of(SolveStage.BLOB_GRAPH,
+            SolveStage.VALID_WORDS, SolveStage.CLEANED_VALID_WORDS));
+        assertSearch(config -> config.maxBatchForOCR = 2, EnumSet.range(SolveStage.LETTERS,
+            SolveStage.CLEANED_VALID_WORDS));
+        assertSearch(config -> config.straightWordsOnly = true, EnumSet.range(SolveStage.VALID_WORDS,
+            SolveStage.CLEANED_VALID_WORDS));
+        assertSearch(config -> config.minWordLength = 4, EnumSet.of(SolveStage.CLEANED_VALID_WORDS));
+
+        // Changing a field back reruns its stages again, as only the latest outputs are kept
+        assertSearch(config -> config.maxBlobSeparationRatio = 1.8, EnumSet.of(SolveStage.BLOB_GRAPH,
+            SolveStage.VALID_WORDS, SolveStage.CLEANED_VALID_WORDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentImage() throws Exception {
+        session.search(createSolver(BarWordsearch.draw(150, 120, 10, 10, "CATS")));
+    }
+
+    /**
+     * Applies the change to the configuration and asserts that searching the session reruns exactly the given stages
+     * and returns the same words as a fresh solve.
+     */
+    private void assertSearch(Consumer<WordsearchSolverConfiguration> change, Set<SolveStage> expectedStages)
+            throws Exception {
+        change.accept(config);
+        WordsearchResult result = session.search(createSolver(image));
+        Assert.assertEquals(expectedStages, session.getLastRunStages());
+        Assert.assertEquals(createSolver(image).solve().toPoints(), result.toPoints());
+    }
+
+    private WordsearchSolver createSolver(BufferedImage image) {
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        solver.setGlyphCache(new GlyphCache(0));
+        solver.setOcrEnginePool(ocrEnginePool);
+        return solver;
+    }
+}
@@ -7,19 +7,34 @@ import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.imageio.ImageIO;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 
 public class WordsearchSolverTest {
 
+    private static final String RANDOM_LETTERS = "AEINSTX";
+
     @Test
     public void test() throws Exception {
         BufferedImage image = ImageIO.read(ClassLoader.getSystemResource("wordsearch.png"));
@@ -32,13 +47,357 @@ public class WordsearchSolverTest {
         Assert.assertFalse(result.containsKey("PLAINS"));
     }
 
+    @Test
+    public void testFindBlobs() {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.LIGHT_GRAY);
+        g.fillRect(0, 0, 20, 10);
+        g.setColor(Color.BLACK);
+        g.fillRect(1, 1, 3, 3);
+        g.fillRect(4, 4, 1, 1);
+        g.fillRect(10, 2, 3, 4);
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.preserveImage = true;
+        WordsearchSolver solver = new WordsearchSolver(image, config, null);
+
+        List<Blob> blobs = solver.findBlobs(solver.getDarkPixels());
+        Assert.assertEquals(2, blobs.size());
+        Assert.assertEquals(1, blobs.get(0).minX);
+        Assert.assertEquals(4, blobs.get(0).maxY);
+        Assert.assertEquals(10, blobs.get(0).getNumPixels());
+        Assert.assertEquals(10, blobs.get(1).minX);
+        Assert.assertEquals(12, blobs.get(1).getNumPixels());
+        Assert.assertEquals(Color.LIGHT_GRAY.getRGB(), image.getRGB(0, 0));
+    }
+
+    @Test
+    public void testStrips() {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(0);
+        for (int y = 0; y < 100; y++)
+            for (int x = 0; x < 100; x++)
+                image.setRGB(x, y, random.nextInt(3) == 0 ? Color.BLACK.getRGB() : Color.WHITE.getRGB());
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.preserveImage = true;
+        List<Blob> blobs = new WordsearchSolver(image, config, null).getBlobs();
+        config.stripHeight = 7;
+        List<Blob> stripBlobs = new WordsearchSolver(image, config, null).getBlobs();
+
+        Assert.assertEquals(blobs.size(), stripBlobs.size());
+        for (int i = 0; i < blobs.size(); i++)
+            Assert.assertArrayEquals(blobs.get(i).runs, stripBlobs.get(i).runs);
+    }
+
+    @Test
+    public void testRegions() {
+        BufferedImage image = new BufferedImage(300, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 300, 100);
+        g.setColor(Color.BLACK);
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++) {
+                g.fillRect(10 + 10 * x, 10 + 10 * y, 4, 4);
+                g.fillRect(200 + 10 * x, 10 + 10 * y, 4, 4);
+            }
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        WordsearchSolver solver = new WordsearchSolver(image, config, null);
+
+        List<Blob> blobs = solver.getCleanedBlobs(solver.getBlobs());
+        List<List<Blob>> regions = solver.getRegions(blobs, solver.getBlobGraph(blobs));
+        Assert.assertEquals(2, regions.size());
+        Assert.assertEquals(9, regions.get(0).size());
+        Assert.assertTrue(regions.get(0).stream().allMatch(blob -> blob.maxX < 100));
+        Assert.assertEquals(9, regions.get(1).size());
+    }
+
+    @Test
+    public void testSolveRegions() throws Exception {
+        Dictionary dictionary = BarWordsearch.getDictionary("cat", "dog");
+        BufferedImage image = BarWordsearch.draw(300, 100, 10, 10, "CAT", "XXX", "XXX");
+        BarWordsearch.draw(image, 200, 10, "DOG", "XXX", "XXX");
+        WordsearchSolver solver = new WordsearchSolver(image, BarWordsearch.getConfig(), dictionary);
+        solver.setGlyphCache(new GlyphCache(0));
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(2, BarWordsearch.getOcrEngineFactory())) {
+            solver.setOcrEnginePool(ocrEnginePool);
+            List<WordsearchResult> results = solver.solveRegions();
+            Assert.assertEquals(2, results.size());
+            Assert.assertEquals(new HashSet<>(Arrays.asList("CAT")), results.get(0).getWords());
+            Assert.assertEquals(new HashSet<>(Arrays.asList("DOG")), results.get(1).getWords());
+        }
+    }
+
+    @Test
+    public void testMismatchedBatch() throws Exception {
+        String text = "CATDOG";
+        List<Blob> blobs = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++)
+            blobs.add(BarWordsearch.getBlob(text.charAt(i), 10 + BarWordsearch.SPACING * i, 10));
+        // Like Tesseract dropping a character, the stub OCR engine misses the A whenever it reads more than one bar
+        OcrEngine.Factory barReader = (datapath, allowedChars) -> batch -> {
+            String bars = BarWordsearch.read(batch);
+            return bars.length() > 1 ? bars.replace("A", "") : bars;
+        };
+        WordsearchSolverConfiguration config = BarWordsearch.getConfig();
+        BufferedImage image = new BufferedImage(200, 40, BufferedImage.TYPE_INT_RGB);
+        WordsearchSolver solver = new WordsearchSolver(image, config, null);
+        GlyphCache glyphCache = new GlyphCache(100);
+        solver.setGlyphCache(glyphCache);
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(2, barReader)) {
+            solver.setOcrEnginePool(ocrEnginePool);
+            Map<Blob, Character> letters = solver.getLetters(blobs);
+            // The batch is recognized again one glyph at a time, so no letter is shifted onto the wrong glyph
+            for (int i = 0; i < text.length(); i++) {
+                Assert.assertEquals(text.charAt(i), (char) letters.get(blobs.get(i)));
+                Assert.assertEquals(text.charAt(i),
+                    (char) glyphCache.get(Glyph.of(blobs.get(i)), config.datapathForOCR, config.allowedCharsForOCR));
+            }
+            Assert.assertEquals(1, solver.getOcrStats().numRetriedBatches);
+            Assert.assertEquals(1 + text.length(), solver.getOcrStats().numBatches);
+        }
+    }
+
+    @Test
+    public void testGrid() throws Exception {
+        File words = File.createTempFile("words", ".txt");
+        words.deleteOnExit();
+        Files.write(words.toPath(), Arrays.asList("cat", "ant", "tea", "cog", "set", "pen", "cae"));
+        Dictionary dictionary = Dictionary.load(words.getPath(), "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        String[] rows = { "CATS", "ONED", "GTAY", "Q RD" };
+        // Rows slope down 4 pixels per column and columns lean left 2 pixels per row, and one cell is empty
+        Map<Blob, Character> letters = new HashMap<>();
+        List<Blob> blobs = layOutGrid(rows, 30, 30, letters);
+        BufferedImage image = new BufferedImage(200, 250, BufferedImage.TYPE_INT_RGB);
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        Multimap<Blob, Blob> blobGraph = solver.getBlobGraph(blobs);
+
+        LetterGrid grid = LetterGrid.detect(blobGraph, letters, config.gridTolerance);
+        Assert.assertEquals(4, grid.numRows);
+        Assert.assertEquals(4, grid.numCols);
+        Assert.assertEquals("GTAY", new String(grid.letters[2]));
+        Assert.assertEquals("Q RD", new String(grid.letters[3]));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("CAT", "ANT", "TEA", "COG", "SET")),
+            findWords(image, config, dictionary, blobGraph, letters, true));
+        Assert.assertEquals(findWords(image, config, dictionary, blobGraph, letters, false),
+            findWords(image, config, dictionary, blobGraph, letters, true));
+
+        // The turn from the rows to the diagonals is under 45 degrees in this shear, so the graph is searched
+        config.maxWordBendAngle = 45;
+        Set<String> bentWords = findWords(image, config, dictionary, blobGraph, letters, true);
+        Assert.assertTrue(bentWords.contains("CAE"));
+        Assert.assertEquals(findWords(image, config, dictionary, blobGraph, letters, false), bentWords);
+        config.maxWordBendAngle = 20;
+
+        // With rows farther apart than columns the graph has no diagonal edges, so neither search finds SET
+        Map<Blob, Character> tallLetters = new HashMap<>();
+        Multimap<Blob, Blob> tallGraph = solver.getBlobGraph(layOutGrid(Arrays.copyOf(rows, 3), 30, 48, tallLetters));
+        Set<String> tallWords = findWords(image, config, dictionary, tallGraph, tallLetters, true);
+        Assert.assertFalse(tallWords.contains("SET"));
+        Assert.assertEquals(findWords(image, config, dictionary, tallGraph, tallLetters, false), tallWords);
+
+        // A blob off the grid leaves the search to the blob graph
+        Blob stray = new Blob(new int[] { 65, 65, 73 });
+        blobGraph.put(blobs.get(0), stray);
+        Assert.assertNull(LetterGrid.detect(blobGraph, letters, config.gridTolerance));
+    }
+
+    /**
+     * Returns blobs for the letters of the rows, the given numbers of pixels apart, with the rows sloping down 4 pixels
+     * per column and the columns leaning left 2 pixels per row if the spacings are equal.
+     */
+    private static List<Blob> layOutGrid(String[] rows, int colSpacing, int rowSpacing, Map<Blob, Character> letters) {
+        boolean sheared = colSpacing == rowSpacing;
+        List<Blob> blobs = new ArrayList<>();
+        for (int row = 0; row < rows.length; row++)
+            for (int col = 0; col < rows[row].length(); col++)
+                if (rows[row].charAt(col) != ' ') {
+                    int x = 50 + colSpacing * col - (sheared ? 2 * row : 0);
+                    int y = 50 + rowSpacing * row + (sheared ? 4 * col : 0);
+                    Blob blob = new Blob(new int[] { y, x, x + 8, y + 10, x, x + 8 });
+                    blobs.add(blob);
+                    letters.put(blob, rows[row].charAt(col));
+                }
+        return blobs;
+    }
+
+    /**
+     * Returns the words found in the blob graph, checking whether the search ran on a grid if grid detection is on.
+     */
+    private static Set<String> findWords(BufferedImage image, WordsearchSolverConfiguration config,
+            Dictionary dictionary, Multimap<Blob, Blob> blobGraph, Map<Blob, Character> letters, boolean detectGrid) {
+        config.detectGrid = detectGrid;
+        WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+        Set<String> words = solver.toResult(
+            solver.getCleanedValidWords(solver.findValidWords(blobGraph, letters)), letters).getWords();
+        if (detectGrid)
+            Assert.assertEquals(config.maxWordBendAngle <= 20,
+                solver.getMetrics().getCounts().containsKey("gridCells"));
+        return words;
+    }
+
+    @Test
+    public void testParallelWordSearch() throws Exception {
+        Random random = new Random(0);
+        Dictionary dictionary = getRandomDictionary(random);
+        Map<Blob, Character> letters = new LinkedHashMap<>();
+        BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.detectGrid = false;
+        config.maxWordBendAngle = 60;
+        Multimap<Blob, Blob> blobGraph = new WordsearchSolver(image, config, dictionary)
+                .getBlobGraph(getRandomBlobs(random, 300, letters));
+        List<List<Blob>> validWords = new WordsearchSolver(image, config, dictionary)
+                .findValidWords(blobGraph, letters);
+        Assert.assertTrue(validWords.size() > 100);
+
+        config.parallelWordSearch = true;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 5; i++) {
+                WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+                solver.setExecutor(executor);
+                Assert.assertEquals(validWords, solver.findValidWords(blobGraph, letters));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrunedWordSearch() throws Exception {
+        Random random = new Random(1);
+        Dictionary dictionary = getRandomDictionary(random);
+        Map<Blob, Character> letters = new LinkedHashMap<>();
+        BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        config.detectGrid = false;
+        Multimap<Blob, Blob> blobGraph = new WordsearchSolver(image, config, dictionary)
+                .getBlobGraph(getRandomBlobs(random, 200, letters));
+
+        for (double maxWordBendAngle : new double[] { 20, 60 })
+            for (boolean straightWordsOnly : new boolean[] { false, true }) {
+                config.maxWordBendAngle = maxWordBendAngle;
+                config.straightWordsOnly = straightWordsOnly;
+                Multiset<List<Blob>> expectedWords = HashMultiset.create();
+                int numPaths = 0;
+                for (Blob blob : blobGraph.keySet())
+                    numPaths += findWordsBruteForce(Lists.newArrayList(blob), Double.NaN, blobGraph, letters,
+                        dictionary, config, expectedWords);
+                Assert.assertFalse(expectedWords.isEmpty());
+
+                WordsearchSolver solver = new WordsearchSolver(image, config, dictionary);
+                Assert.assertEquals(expectedWords, HashMultiset.create(solver.findValidWords(blobGraph, letters)));
+                Assert.assertTrue(solver.getMetrics().getCounts().get("dfsNodes") < numPaths);
+            }
+    }
+
+    /**
+     * Adds every path extending the given one, up to the length of the longest random word, that spells a dictionary
+     * word and stays within the bend limit, without pruning by prefix. Returns the number of paths visited.
+     */
+    private static int findWordsBruteForce(List<Blob> path, double heading, Multimap<Blob, Blob> blobGraph,
+            Map<Blob, Character> letters, Dictionary dictionary, WordsearchSolverConfiguration config,
+            Multiset<List<Blob>> validWords) {
+        if (dictionary.contains(Joiner.on("").join(Lists.transform(path, letters::get))))
+            validWords.add(new ArrayList<>(path));
+        if (path.size() == 6)
+            return 1;
+        int numPaths = 1;
+        Blob blob = path.get(path.size() - 1);
+        for (Blob neighborBlob : blobGraph.get(blob)) {
+            double stepHeading = blob.center.headingTo(neighborBlob.center);
+            if (path.size() > 1) {
+                double bendAngle = Math.abs(heading - stepHeading);
+                if (bendAngle >= config.maxWordBendAngle && bendAngle <= 360 - config.maxWordBendAngle)
+                    continue;
+            }
+            path.add(neighborBlob);
+            numPaths += findWordsBruteForce(path, path.size() > 2 && config.straightWordsOnly ? heading : stepHeading,
+                blobGraph, letters, dictionary, config, validWords);
+            path.remove(path.size() - 1);
+        }
+        return numPaths;
+    }
+
+    @Test
+    public void testCleanedValidWords() throws Exception {
+        Map<Blob, Character> letters = new HashMap<>();
+        List<Blob> blobs = layOutGrid(new String[] { "PLAINSMAN", "A", "N" }, 30, 40, letters);
+        List<Blob> plainsman = blobs.subList(0, 9);
+        List<Blob> pan = Arrays.asList(blobs.get(0), blobs.get(9), blobs.get(10));
+        List<List<Blob>> validWords = Arrays.asList(blobs.subList(0, 5), blobs.subList(0, 6), plainsman,
+            blobs.subList(6, 9), blobs.subList(0, 2), pan, new ArrayList<>(plainsman));
+        WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
+        WordsearchSolver solver = new WordsearchSolver(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), config,
+            null);
+
+        // PLAIN, PLAINS and MAN lie within PLAINSMAN, and PA is too short
+        List<List<Blob>> cleanedValidWords = solver.getCleanedValidWords(validWords);
+        Assert.assertEquals(Arrays.asList(plainsman, pan, plainsman), cleanedValidWords);
+        // The same word found twice is reported once
+        Assert.assertEquals(new HashSet<>(Arrays.asList("PLAINSMAN", "PAN")),
+            solver.toResult(cleanedValidWords, letters).getWords());
+
+        // The index of words by blob removes the same words as comparing every pair of words
+        Random random = new Random(2);
+        Dictionary dictionary = getRandomDictionary(random);
+        letters.clear();
+        config.detectGrid = false;
+        config.maxWordBendAngle = 60;
+        solver = new WordsearchSolver(new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), config, dictionary);
+        validWords = solver.findValidWords(solver.getBlobGraph(getRandomBlobs(random, 200, letters)), letters);
+        for (int minWordLength = 2; minWordLength <= 4; minWordLength++) {
+            config.minWordLength = minWordLength;
+            List<List<Blob>> expectedWords = new ArrayList<>();
+            for (List<Blob> word : validWords)
+                if (word.size() >= minWordLength && validWords.stream()
+                        .filter(outerWord -> !word.equals(outerWord))
+                        .noneMatch(outerWord -> outerWord.containsAll(word)))
+                    expectedWords.add(word);
+            Assert.assertTrue(expectedWords.size() < validWords.size());
+            Assert.assertEquals(expectedWords, solver.getCleanedValidWords(validWords));
+        }
+    }
+
+    /**
+     * Returns blobs of random letters at random points of a 300 by 300 image. The letters include X, which starts no
+     * dictionary word.
+     */
+    private static List<Blob> getRandomBlobs(Random random, int numBlobs, Map<Blob, Character> letters) {
+        List<Blob> blobs = new ArrayList<>();
+        for (int i = 0; i < numBlobs; i++) {
+            int x = random.nextInt(290), y = random.nextInt(290);
+            Blob blob = new Blob(new int[] { y, x, x + 8, y + 8, x, x + 8 });
+            blobs.add(blob);
+            letters.put(blob, RANDOM_LETTERS.charAt(random.nextInt(RANDOM_LETTERS.length())));
+        }
+        return blobs;
+    }
+
+    /**
+     * Returns a dictionary of random words of 2 to 6 letters other than X.
+     */
+    private static Dictionary getRandomDictionary(Random random) throws IOException {
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[2 + random.nextInt(5)];
+            for (int j = 0; j < word.length; j++)
+                word[j] = RANDOM_LETTERS.charAt(random.nextInt(RANDOM_LETTERS.length() - 1));
+            words[i] = new String(word);
+        }
+        return BarWordsearch.getDictionary(words);
+    }
+
     @Test
     public void play() throws Exception {
         BufferedImage image = ImageIO.read(ClassLoader.getSystemResource("wordsearch.png"));
         WordsearchSolverConfiguration config = new WordsearchSolverConfiguration();
         WordsearchSolver solver = new WordsearchSolver(image, config);
 
-        boolean[][] darkPixels = solver.getDarkPixels();
+        Bitmap darkPixels = solver.getDarkPixels();
         List<Blob> blobs = solver.findBlobs(darkPixels);
         List<Blob> cleanedBlobs = solver.getCleanedBlobs(blobs);
         Multimap<Blob, Blob> blobGraph = solver.getBlobGraph(cleanedBlobs);
@@ -0,0 +1,102 @@
+package com.kyc.server;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.kyc.hawkeye.SolveMetrics;
+import com.sun.net.httpserver.HttpServer;
+
+public class HistogramTest {
+
+    @Test
+    public void testWrite() {
+        // Buckets up to 1, 2 and 4, and a final bucket for larger values
+        Histogram histogram = new Histogram(1, 2, 3);
+        for (double value : new double[] { 0.5, 1, 1.5, 3, 100 })
+            histogram.record(value);
+
+        StringBuilder out = new StringBuilder();
+        histogram.write(out, "test_seconds", "stage=\"blobs\"");
+        Assert.assertEquals(String.join("\n",
+            "test_seconds_bucket{stage=\"blobs\",le=\"1.0\"} 2",
+            "test_seconds_bucket{stage=\"blobs\",le=\"2.0\"} 3",
+            "test_seconds_bucket{stage=\"blobs\",le=\"4.0\"} 4",
+            "test_seconds_bucket{stage=\"blobs\",le=\"+Inf\"} 5",
+            "test_seconds_sum{stage=\"blobs\"} 106.0",
+            "test_seconds_count{stage=\"blobs\"} 5",
+            ""), out.toString());
+
+        out = new StringBuilder();
+        new Histogram(1, 2, 1).write(out, "test_seconds", "");
+        Assert.assertEquals(String.join("\n",
+            "test_seconds_bucket{le=\"1.0\"} 0",
+            "test_seconds_bucket{le=\"+Inf\"} 0",
+            "test_seconds_sum 0.0",
+            "test_seconds_count 0",
+            ""), out.toString());
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        Histogram histogram = new Histogram(1, 2, 3);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10000; j++)
+                    histogram.record(j % 2 == 0 ? 0.5 : 2);
+            }));
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        StringBuilder out = new StringBuilder();
+        histogram.write(out, "test", "");
+        Assert.assertTrue(out.toString(), out.toString().contains("test_bucket{le=\"1.0\"} 20000\n"));
+        Assert.assertTrue(out.toString(), out.toString().contains("test_bucket{le=\"2.0\"} 40000\n"));
+        Assert.assertTrue(out.toString(), out.toString().contains("test_sum 50000.0\n"));
+        Assert.assertTrue(out.toString(), out.toString().contains("test_count 40000\n"));
+    }
+
+    @Test
+    public void testMetricsHandler() throws Exception {
+        PuzzleServer.MetricsHandler metricsHandler = new PuzzleServer.MetricsHandler();
+        metricsHandler.record(new SolveMetrics(), 1500000000L);
+        metricsHandler.record(new SolveMetrics(), 3000000L);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/metrics", metricsHandler);
+        server.start();
+        try {
+            URL url = new URL("http", "localhost", server.getAddress().getPort(), "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertEquals("text/plain; version=0.0.4", connection.getHeaderField("Content-type"));
+            List<String> lines = Arrays.asList(
+                new String(ByteStreams.toByteArray(connection.getInputStream()), StandardCharsets.UTF_8).split("\n"));
+            Assert.assertEquals("# TYPE hawkeye_solve_seconds histogram", lines.get(0));
+            // Buckets of 1, 2, 4, ... ms: the 3 ms solve is in the 4 ms bucket, and the 1.5 s solve in the 2.048 s one
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_bucket{le=\"0.002\"} 0"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_bucket{le=\"0.004\"} 1"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_bucket{le=\"1.024\"} 1"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_bucket{le=\"2.048\"} 2"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_bucket{le=\"+Inf\"} 2"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_sum 1.503"));
+            Assert.assertTrue(lines.contains("hawkeye_solve_seconds_count 2"));
+            // Stages that never ran are reported with empty histograms
+            Assert.assertTrue(lines.contains("hawkeye_stage_seconds_count{stage=\"blobs\"} 0"));
+            Assert.assertTrue(lines.contains("hawkeye_stage_allocated_bytes_count{stage=\"letters\"} 0"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
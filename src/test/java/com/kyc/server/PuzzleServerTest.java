@@ -0,0 +1,229 @@
+package com.kyc.server;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.kyc.hawkeye.GlyphCache;
+import com.kyc.hawkeye.OcrEngine;
+import com.kyc.hawkeye.OcrEnginePool;
+import com.kyc.hawkeye.SolveCache;
+import com.sun.net.httpserver.HttpServer;
+
+public class PuzzleServerTest {
+
+    private static final String BOUNDARY = "PuzzleServerTestBoundary";
+    private static final OcrEngine.Factory READ_A = (datapath, allowedChars) -> image -> "A";
+
+    private Path dictionaryPath;
+    private HttpServer server;
+    private PuzzleServer.HawkeyeSubmitHandler submitHandler;
+    private OcrEnginePool ocrEnginePool;
+    private ThreadPoolExecutor solverExecutor;
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null)
+            server.stop(0);
+        if (solverExecutor != null)
+            solverExecutor.shutdownNow();
+        if (ocrEnginePool != null)
+            ocrEnginePool.close();
+        if (dictionaryPath != null)
+            Files.delete(dictionaryPath);
+    }
+
+    @Test
+    public void testUnknownFormat() throws Exception {
+        start(READ_A, 60, 1);
+        HttpURLConnection connection = submit("?format=xml", null, getForm(null, "min-word-length", "3"));
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertEquals("Unknown format xml.", read(connection.getErrorStream(), false));
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        start(READ_A, 60, 1);
+        // A submit without an image is answered with no words, in the requested format
+        byte[] form = getForm(null, "min-word-length", "3");
+        HttpURLConnection connection = submit("?format=boxes", "gzip", form);
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals("gzip", connection.getHeaderField("Content-encoding"));
+        Assert.assertEquals("{}", read(connection.getInputStream(), true));
+
+        for (String acceptEncoding : new String[] { "gzip;q=0", "gzip; q=0.0, identity", "*;q=0", "deflate" }) {
+            connection = submit("", acceptEncoding, form);
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertNull(acceptEncoding, connection.getHeaderField("Content-encoding"));
+            Assert.assertEquals("{}", read(connection.getInputStream(), false));
+        }
+
+        connection = submit("?format=binary", "x-gzip;q=0.5, *;q=0", form);
+        Assert.assertEquals("gzip", connection.getHeaderField("Content-encoding"));
+        Assert.assertEquals("application/octet-stream", connection.getHeaderField("Content-type"));
+        try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+            Assert.assertArrayEquals(new byte[4], ByteStreams.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void testTooManyUploads() throws Exception {
+        start(READ_A, 60, 1);
+        byte[] form = getForm(null, "min-word-length", "3");
+        // The first upload stalls part way through, holding the only permit
+        HttpURLConnection stalled = openSubmit("");
+        stalled.setChunkedStreamingMode(16);
+        OutputStream stalledBody = stalled.getOutputStream();
+        stalledBody.write(form, 0, 10);
+        stalledBody.flush();
+        awaitAvailableUploadPermits(0);
+
+        HttpURLConnection connection = submit("", null, form);
+        Assert.assertEquals(503, connection.getResponseCode());
+        Assert.assertEquals("10", connection.getHeaderField("Retry-After"));
+
+        stalledBody.write(form, 10, form.length - 10);
+        stalledBody.close();
+        Assert.assertEquals(200, stalled.getResponseCode());
+        Assert.assertEquals("{}", read(stalled.getInputStream(), false));
+        awaitAvailableUploadPermits(1);
+        Assert.assertEquals(200, submit("", null, form).getResponseCode());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        // The OCR engine holds up the solve until it is interrupted
+        start((datapath, allowedChars) -> image -> {
+            reading.countDown();
+            try {
+                TimeUnit.MINUTES.sleep(1);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return "";
+        }, 1, 1);
+        BufferedImage image = new BufferedImage(100, 60, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 100, 60);
+        g.setColor(Color.BLACK);
+        for (int x = 10; x < 100; x += 30)
+            g.fillRect(x, 20, 10, 12);
+
+        HttpURLConnection connection = submit("", null, getForm(image));
+        Assert.assertEquals(504, connection.getResponseCode());
+        Assert.assertEquals("Solving took longer than 1 seconds.", read(connection.getErrorStream(), false));
+        Assert.assertEquals(0, reading.getCount());
+        // The solve was cancelled, which cancelled its OCR, and it gave up its solver thread and upload permit
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (solverExecutor.getActiveCount() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        Assert.assertEquals(0, solverExecutor.getActiveCount());
+        awaitAvailableUploadPermits(1);
+        Assert.assertEquals(200, submit("", null, getForm(null, "min-word-length", "3")).getResponseCode());
+    }
+
+    /**
+     * Starts a server on a free port with a submit handler that recognizes letters with the given engines, looks words
+     * up in a dictionary of CAT, and solves on one thread.
+     */
+    private void start(OcrEngine.Factory engineFactory, long solveTimeoutSeconds, int maxConcurrentUploads)
+            throws IOException {
+        dictionaryPath = Files.createTempFile("words", ".txt");
+        Files.write(dictionaryPath, Arrays.asList("cat"));
+        ocrEnginePool = new OcrEnginePool(1, engineFactory);
+        solverExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        submitHandler = new PuzzleServer.HawkeyeSubmitHandler(dictionaryPath.toString(), ocrEnginePool,
+            new GlyphCache(0), new SolveCache(1 << 20, 1 << 20), 1 << 20, solverExecutor, solveTimeoutSeconds, 1 << 20,
+            maxConcurrentUploads, new PuzzleServer.MetricsHandler());
+        server.createContext("/hawkeye/submit", submitHandler);
+        server.start();
+    }
+
+    /**
+     * Waits for the given number of upload permits to be available, such as for requests to finish after their
+     * responses were received.
+     */
+    private void awaitAvailableUploadPermits(int numPermits) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (submitHandler.getAvailableUploadPermits() != numPermits && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        Assert.assertEquals(numPermits, submitHandler.getAvailableUploadPermits());
+    }
+
+    /**
+     * Posts the form to the submit handler with the given query string and Accept-Encoding header, if any.
+     */
+    private HttpURLConnection submit(String query, String acceptEncoding, byte[] form) throws IOException {
+        HttpURLConnection connection = openSubmit(query);
+        if (acceptEncoding != null)
+            connection.setRequestProperty("Accept-encoding", acceptEncoding);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(form);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection openSubmit(String query) throws IOException {
+        URL url = new URL("http", "localhost", server.getAddress().getPort(), "/hawkeye/submit" + query);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-type", "multipart/form-data; boundary=" + BOUNDARY);
+        return connection;
+    }
+
+    /**
+     * Returns a multipart form of the image as a PNG file, if any, and the fields, given as alternating names and
+     * values.
+     */
+    private static byte[] getForm(BufferedImage image, String... fields) throws IOException {
+        ByteArrayOutputStream form = new ByteArrayOutputStream();
+        if (image != null) {
+            form.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"image\"; filename=\"image.png\""
+                    + "\r\nContent-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            ImageIO.write(image, "png", form);
+            form.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < fields.length; i += 2)
+            form.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + fields[i] + "\"\r\n\r\n"
+                    + fields[i + 1] + "\r\n").getBytes(StandardCharsets.UTF_8));
+        form.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return form.toByteArray();
+    }
+
+    private static String read(InputStream in, boolean gzip) throws IOException {
+        try (InputStream body = gzip ? new GZIPInputStream(in) : in) {
+            return new String(ByteStreams.toByteArray(body), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.kyc.wikinet;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WikinetBuilderTest {
+
+    private static final String PART1 = "<mediawiki xml:lang=\"en\">\n"
+            + "  <page>\n"
+            + "    <title>Plane</title>\n"
+            + "    <revision><text xml:space=\"preserve\">{{Other uses|Plane (disambiguation)}}\n"
+            + "[[File:Plane.jpg|thumb|A plane]]\n"
+            + "A '''plane''' is a powered flying vehicle with [[fixed-wing aircraft|fixed wings]]"
+            + "&lt;ref name=&quot;oed&quot;&gt;Oxford&lt;/ref&gt; and a weight greater than that of the air it"
+            + " displaces.&amp;nbsp;Planes fly.\n"
+            + "\n"
+            + "== History ==\n"
+            + "</text></revision>\n"
+            + "  </page>\n"
+            + "  <page>\n"
+            + "    <title>Aeroplane</title>\n"
+            + "    <revision><text xml:space=\"preserve\">#REDIRECT [[Plane]]</text></revision>\n"
+            + "  </page>\n"
+            + "</mediawiki>\n";
+    private static final String PART2 = "<mediawiki xml:lang=\"en\">\n"
+            + "  <page>\n"
+            + "    <title>Cake (disambiguation)</title>\n"
+            + "    <revision><text xml:space=\"preserve\">'''Cake''' may refer to:\n"
+            + "* [[Cake]], a sweet food\n"
+            + "* [[Cake (band)|Cake]], a band\n"
+            + "{{disambiguation}}</text></revision>\n"
+            + "  </page>\n"
+            + "  <page>\n"
+            + "    <title>Pie</title>\n"
+            + "    <revision><text xml:space=\"preserve\">A '''pie''' is a baked dish.</text></revision>\n"
+            + "  </page>\n"
+            + "</mediawiki>\n";
+
+    @Test
+    public void testGetSummary() {
+        Assert.assertEquals("A '''plane''' is a flying vehicle with fixed-wing aircraft|fixed wings and a "
+                + "weightgreater than that of the air, which it displaces.",
+            WikiDumpParser.getSummary("{{Infobox\n| name = Plane\n}}\n"
+                    + ": Aircraft redirects here. For other uses, see the many articles listed at aircraft "
+                    + "(disambiguation).\n"
+                    + "A '''plane''' is a flying vehicle with [[fixed-wing aircraft|fixed wings]]<ref>a</ref> and a "
+                    + "weight&nbsp;greater than that of the air,<!-- comment --> which it displaces.<ref name=b/>\n"
+                    + "\n"
+                    + "Next paragraph."));
+        Assert.assertEquals("x  ", WikiDumpParser.getSummary("x <math>y</math>"));
+        Assert.assertEquals("a  d  e  f ", WikiDumpParser.getSummary("a <math>b < c</math> d <br/> e <ref name=x /> f"));
+        Assert.assertEquals(Arrays.asList("Cake", "Cake (band)"),
+            WikiDumpParser.getRedirects("* [[Cake]]\n* [[Cake (band)|Cake]]"));
+        Assert.assertTrue(WikiDumpParser.isRedirectPage("#Redirect [[Plane]]"));
+        Assert.assertFalse(WikiDumpParser.isRedirectPage("A [[plane]] flies."));
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        Path data = Files.createTempDirectory("data");
+        Path part1 = data.resolve("articles1.xml");
+        Files.write(part1, PART1.getBytes(StandardCharsets.UTF_8));
+        Path part2 = data.resolve("articles2.xml.bz2");
+        try (OutputStream out = new BZip2CompressorOutputStream(Files.newOutputStream(part2))) {
+            out.write(PART2.getBytes(StandardCharsets.UTF_8));
+        }
+        WikinetBuilder wikinetBuilder = new WikinetBuilder(2);
+
+        Path indexFile = Files.createTempFile("wikinet", ".index");
+        try (WikinetIndexBuilder builder = new WikinetIndexBuilder()) {
+            wikinetBuilder.buildIndex(Arrays.asList(part1, part2), builder);
+            builder.write(indexFile);
+        }
+        Path processed = Files.createTempDirectory("processed");
+        wikinetBuilder.buildProcessed(Arrays.asList(part1, part2), processed);
+        Path processedIndexFile = Files.createTempFile("wikinet", ".index");
+        try (WikinetIndexBuilder builder = new WikinetIndexBuilder()) {
+            builder.addProcessed(processed);
+            builder.write(processedIndexFile);
+        }
+
+        for (Path file : Arrays.asList(indexFile, processedIndexFile))
+            try (WikinetIndex index = WikinetIndex.open(file)) {
+                Assert.assertEquals(
+                    Arrays.asList("AEROPLANE", "CAKE", "CAKEBAND", "CAKEDISAMBIGUATION", "PIE", "PLANE"),
+                    index.findPrefix("", 10));
+                Assert.assertEquals(Arrays.asList("A '''plane''' is a powered flying vehicle with fixed-wing "
+                        + "aircraft|fixed wings and a weight greater than that of the air it displaces.Planes fly."),
+                    index.getSummaries("Plane"));
+                Assert.assertEquals(Arrays.asList("PLANE"), index.getRedirects("Aeroplane"));
+                Assert.assertEquals(Arrays.asList("AEROPLANE"), index.getRedirects("Plane"));
+                Assert.assertEquals(Arrays.asList("CAKE", "CAKEBAND"), index.getRedirects("Cake (disambiguation)"));
+                Assert.assertEquals(Collections.emptyList(), index.getSummaries("Cake"));
+                // Summaries shorter than a paragraph end with a space from the parser, trimmed in both modes
+                Assert.assertEquals(Arrays.asList("A '''pie''' is a baked dish."), index.getSummaries("Pie"));
+            }
+    }
+}
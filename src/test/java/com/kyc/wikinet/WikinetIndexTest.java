@@ -0,0 +1,54 @@
+package com.kyc.wikinet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WikinetIndexTest {
+
+    @Test
+    public void test() throws Exception {
+        Path processed = Files.createTempDirectory("processed");
+        Files.createDirectories(processed.resolve("summaries/00"));
+        Files.createDirectories(processed.resolve("redirects/00"));
+        Files.write(processed.resolve("summaries/00/00"), Arrays.asList(
+            "PLANE A powered flying vehicle with fixed wings.",
+            "PLANT Plants are mainly multicellular eukaryotes.",
+            "PLANE A flat surface extending infinitely far."));
+        Files.write(processed.resolve("summaries/00/01"), Arrays.asList(
+            "CAFE A caf\u00e9 serves coffee.",
+            "CAKE A form of sweet food."));
+        Files.write(processed.resolve("redirects/00/00"), Arrays.asList(
+            "AEROPLANE PLANE", "PLANE AEROPLANE", "AIRPLANE PLANE", "PLANE AIRPLANE", "PLANE AIRPLANE"));
+        Path indexFile = Files.createTempFile("wikinet", ".index");
+        try (WikinetIndexBuilder builder = new WikinetIndexBuilder()) {
+            builder.addProcessed(processed);
+            builder.write(indexFile);
+        }
+
+        try (WikinetIndex index = WikinetIndex.open(indexFile)) {
+            Assert.assertEquals(6, index.size());
+            Assert.assertTrue(index.contains("Plane"));
+            Assert.assertFalse(index.contains("PLAN"));
+            Assert.assertEquals(Arrays.asList("A powered flying vehicle with fixed wings.",
+                "A flat surface extending infinitely far."), index.getSummaries("plane"));
+            Assert.assertEquals(Arrays.asList("A caf\u00e9 serves coffee."), index.getSummaries("cafe"));
+            Assert.assertEquals(Collections.emptyList(), index.getSummaries("AIRPLANE"));
+            Assert.assertEquals(Arrays.asList("AEROPLANE", "AIRPLANE"), index.getRedirects("PLANE"));
+            Assert.assertEquals(Arrays.asList("PLANE"), index.getRedirects("AIRPLANE"));
+
+            Assert.assertEquals(Arrays.asList("PLANE", "PLANT"), index.findPrefix("pla", 10));
+            Assert.assertEquals(Arrays.asList("PLANE"), index.findPrefix("PLA", 1));
+            Assert.assertEquals(Collections.emptyList(), index.findPrefix("Z", 10));
+            Assert.assertEquals(Arrays.asList("CAFE", "CAKE"), index.findPattern("CA?E", 10));
+            Assert.assertEquals(Arrays.asList("CAKE"), index.findPattern("?AK?", 10));
+            Assert.assertEquals(Arrays.asList("PLANE", "PLANT"), index.findPattern("?????", 10));
+            Assert.assertEquals(Arrays.asList("AIRPLANE"), index.findPattern("???PLANE", 10));
+            Assert.assertEquals(Collections.emptyList(), index.findPattern("??", 10));
+        }
+    }
+}